@@ -0,0 +1,177 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This creates the synthetic play-lists and song libraries used by the benchmarks. Everything is created under the
+ * folder given with -Dm3t.bench.dir, or /dev/shm if it exists so the copy benchmarks measure the program and not the
+ * disk, or the temporary folder otherwise.
+ */
+public final class BenchmarkLibrary{
+	private static final int ARTISTS = 500;
+	private static final int ALBUMS = 10;
+	private static final int BUFFER = 1024 * 1024;
+	
+	private BenchmarkLibrary(){
+	}
+	
+	/**
+	 * @param name A name to recognize the folder
+	 * @return A new empty folder for a benchmark
+	 * @throws IOException If the folder can't be created
+	 */
+	public static File createFolder(String name) throws IOException{
+		String base = System.getProperty("m3t.bench.dir");
+		
+		if(base == null)
+			base = new File("/dev/shm").isDirectory() ? "/dev/shm" : System.getProperty("java.io.tmpdir");
+		
+		return Files.createTempDirectory(new File(base).toPath(), "m3t-" + name + "-").toFile();
+	}
+	
+	/**
+	 * Deletes a folder created for a benchmark.
+	 * @param folder The folder
+	 */
+	public static void delete(File folder){
+		FileUtils.deleteQuietly(folder);
+	}
+	
+	/**
+	 * @param root The folder that has the library
+	 * @param index The number of a song
+	 * @param depth The number of folders between the root and the album folder
+	 * @return The path of the song, songs are spread over artists and albums like a real library
+	 */
+	public static File song(File root, int index, int depth){
+		File folder = root;
+		
+		for(int i = 0; i < depth; i++){
+			folder = new File(folder, "Genre" + (index % (i + 3)));
+		}
+		
+		folder = new File(folder, "Artist" + (index % ARTISTS));
+		folder = new File(folder, "Album" + (index / ARTISTS % ALBUMS));
+		
+		return new File(folder, "Track" + index + ".mp3");
+	}
+	
+	/**
+	 * Writes a play-list with an #EXTINF line for each song. The songs don't have to exist.
+	 * @param folder The play-list is written into this folder
+	 * @param root The folder that has the library
+	 * @param songs The number of songs
+	 * @param depth The number of folders between the root and the album folder
+	 * @return The play-list
+	 * @throws IOException If the play-list can't be written
+	 */
+	public static File writePlaylist(File folder, File root, int songs, int depth) throws IOException{
+		File playlist = new File(folder, "playlist-" + songs + ".m3u8");
+		
+		try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(playlist),
+				StandardCharsets.UTF_8))){
+			writer.write("#EXTM3U\n");
+			
+			for(int i = 0; i < songs; i++){
+				writer.write("#EXTINF:" + (120 + i % 240) + ",Artist" + (i % ARTISTS) + " - Track" + i + "\n");
+				writer.write(song(root, i, depth).getAbsolutePath());
+				writer.write('\n');
+			}
+		}
+		
+		return playlist;
+	}
+	
+	/**
+	 * Creates real songs with random contents and a play-list of them.
+	 * @param folder The play-list is written into this folder
+	 * @param root The songs are created in this folder
+	 * @param sizes "small" for many small files like audiobook chapters, "mixed" for a typical MP3 library with a
+	 * few lossless albums, or "large" for a few very large files
+	 * @return The play-list
+	 * @throws IOException If the songs can't be written
+	 */
+	public static File createSongs(File folder, File root, String sizes) throws IOException{
+		Random random = new Random(42);
+		int songs;
+		
+		if(sizes.equals("small"))
+			songs = 1000;
+		else if(sizes.equals("mixed"))
+			songs = 100;
+		else if(sizes.equals("large"))
+			songs = 4;
+		else
+			throw new IllegalArgumentException("Unknown size distribution: " + sizes);
+		
+		for(int i = 0; i < songs; i++){
+			long size;
+			
+			if(sizes.equals("small"))
+				size = 16 * 1024 + random.nextInt(240 * 1024);
+			else if(sizes.equals("mixed"))
+				size = i % 25 == 0 ? 24L * 1024 * 1024 : 2L * 1024 * 1024 + random.nextInt(4 * 1024 * 1024);
+			else
+				size = 128L * 1024 * 1024;
+			
+			write(song(root, i, 0), size, random);
+		}
+		
+		return writePlaylist(folder, root, songs, 0);
+	}
+	
+	/**
+	 * @param file The file that will be written
+	 * @param size The size of the file
+	 * @param random Random contents so nothing can compress or skip the data
+	 * @throws IOException If the file can't be written
+	 */
+	private static void write(File file, long size, Random random) throws IOException{
+		byte[] buffer = new byte[BUFFER];
+		random.nextBytes(buffer);
+		file.getParentFile().mkdirs();
+		
+		try(OutputStream out = new FileOutputStream(file)){
+			for(long written = 0; written < size; written += BUFFER){
+				out.write(buffer, 0, (int) Math.min(BUFFER, size - written));
+			}
+		}
+	}
+}
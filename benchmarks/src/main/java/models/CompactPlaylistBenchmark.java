@@ -0,0 +1,95 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * Measures reading a synthetic play-list into a CompactPlaylist and ordering its songs, with the songs kept on the heap
+ * or mostly in a spill file. Run it with -prof gc to see how much memory each song takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompactPlaylistBenchmark{
+	@Param({"100000", "1000000"})
+	public int songs;
+	
+	@Param({"heap", "spill"})
+	public String storage;
+	
+	private File folder;
+	private File playlist;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException{
+		folder = BenchmarkLibrary.createFolder("compact");
+		playlist = BenchmarkLibrary.writePlaylist(folder, new File(folder, "Music"), songs, 2);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		BenchmarkLibrary.delete(folder);
+	}
+	
+	@Benchmark
+	public int read(Blackhole blackhole) throws IOException, InterruptedException{
+		try(CompactPlaylist compact = new CompactPlaylist(storage.equals("spill") ? folder : null);
+				PlaylistParser parser = new PlaylistParser(playlist)){
+			PlaylistEntry entry;
+			
+			while((entry = parser.next()) != null){
+				compact.add(entry);
+			}
+			
+			blackhole.consume(new LocalityScheduler(LocalityScheduler.FOLDER).order(compact));
+			
+			return compact.size();
+		}
+	}
+}
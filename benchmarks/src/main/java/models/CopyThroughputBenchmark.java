@@ -0,0 +1,118 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * Measures copying a whole play-list with the CopyEngine, from reading the play-list to the last renamed copy. Each
+ * invocation copies into an empty target folder. Divide the size of the library by the time to get the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyThroughputBenchmark{
+	@Param({"nio", "stream", "pipeline"})
+	public String strategy;
+	
+	@Param({"small", "mixed", "large"})
+	public String sizes;
+	
+	@Param({"1", "4"})
+	public int workers;
+	
+	private File folder;
+	private File root;
+	private File playlist;
+	private File target;
+	private Model model;
+	
+	private static final CopyListener SILENT = new CopyListener() {
+		@Override
+		public void songProcessed(CopyResult result) {
+		}
+		
+		@Override
+		public void messageReported(String message) {
+		}
+	};
+	
+	@Setup(Level.Trial)
+	public void createLibrary() throws IOException{
+		folder = BenchmarkLibrary.createFolder("copy");
+		root = new File(folder, "Music");
+		playlist = BenchmarkLibrary.createSongs(folder, root, sizes);
+	}
+	
+	@Setup(Level.Invocation)
+	public void prepareTarget() throws IOException{
+		target = new File(folder, "Target");
+		BenchmarkLibrary.delete(target);
+		target.mkdirs();
+		
+		model = new Model();
+		model.m3uSelected(playlist);
+		model.rootSelected(root);
+		model.targetSelected(target);
+		model.setLevel(-1);
+		model.setWorkers(workers);
+		model.setCopyStrategy(strategy);
+		model.isRunning = true;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		BenchmarkLibrary.delete(folder);
+	}
+	
+	@Benchmark
+	public long copy() throws InterruptedException{
+		new CopyEngine(model).run(SILENT);
+		
+		return model.getBytesCopied();
+	}
+}
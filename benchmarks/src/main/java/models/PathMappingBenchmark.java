@@ -0,0 +1,106 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * Measures how long it takes to find the target path of every song in a play-list with the "copy contents" and the
+ * "copy from bottom" options, for shallow and deep libraries. Nothing is copied.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathMappingBenchmark{
+	@Param({"contents", "bottom"})
+	public String mode;
+	
+	@Param({"0", "8"})
+	public int depth;
+	
+	@Param({"100000"})
+	public int songs;
+	
+	private File folder;
+	private File target;
+	private Model model;
+	private List<PlaylistEntry> entries;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException{
+		folder = BenchmarkLibrary.createFolder("mapping");
+		File root = new File(folder, "Music");
+		target = new File(folder, "Target");
+		
+		model = new Model();
+		model.m3uSelected(BenchmarkLibrary.writePlaylist(folder, root, songs, depth));
+		model.rootSelected(root);
+		model.targetSelected(target);
+		model.setLevel(mode.equals("contents") ? -1 : 2);
+		CompactPlaylist songs = model.readPlaylist();
+		entries = new ArrayList<>();
+		
+		for(int i = 0; i < songs.size(); i++){
+			entries.add(songs.get(i));
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		BenchmarkLibrary.delete(folder);
+	}
+	
+	@Benchmark
+	public void map(Blackhole blackhole){
+		for(PlaylistEntry entry : entries){
+			blackhole.consume(model.destinationOf(entry, target));
+		}
+	}
+}
@@ -27,22 +27,33 @@ package controllers;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JFileChooser;
-import javax.swing.JTextArea;
 
 import views.View;
+import models.CopyEngine;
+import models.CopyResult;
+import models.CopyListener;
 import models.Model;
+import models.PlaylistBatch;
+import models.SpacePlanner;
+import models.StreamChecksum;
 
 /**
  * @author M. Noyan Baykal
  * 
  * This is the Controller class that connects the Model and the View classes.
  * It implements Runnable so that copying songs will be done on another thread and the GUI will be responsive.
+ * The copying itself is done by the workers of a CopyEngine, which report back through the CopyListener functions.
  */
-public class Controller implements Runnable{
+public class Controller implements Runnable, CopyListener{
 	private  Model model;
 	private View view;
+	private ProgressReporter reporter;
 	
 	/**
 	 * @param model The Model class that has keeps the required data for copying and has the copy functions
@@ -51,6 +62,7 @@ public class Controller implements Runnable{
 	public Controller(Model model, View view){
 		this.model = model;
 		this.view = view;
+		this.reporter = new ProgressReporter(view, model);
 	}
 	
 	/**
@@ -91,22 +103,63 @@ public class Controller implements Runnable{
 				setStartButton(e);
 			}
 		});
+		
+		//The rate limits can be changed while copying by pressing enter in their fields
+		ActionListener limits = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if(setRateLimit() && model.isRunning)
+					writeError("Changed the rate limit\n");
+			}
+		};
+		
+		view.getRateField().addActionListener(limits);
+		view.getFilesField().addActionListener(limits);
+	}
+	
+	/**
+	 * Reads the rate limits from the GUI and gives them to the model. An empty field means there is no limit.
+	 * @return False if a field doesn't have a number, the limits are not changed then
+	 */
+	private boolean setRateLimit(){
+		String rate = view.getRateField().getText().trim();
+		String files = view.getFilesField().getText().trim();
+		
+		try{
+			model.setRateLimit(rate.isEmpty() ? 0 : Double.parseDouble(rate),
+					files.isEmpty() ? 0 : Double.parseDouble(files));
+			return true;
+		}catch(NumberFormatException ex){
+			writeError("You must enter a number for the rate limits or leave them empty\n");
+			return false;
+		}
 	}
 	
 	/**
 	 * This is the function that is called when the setM3u button is pressed. It opens a file browser to select the
-	 * playlist file.
+	 * playlist file. More than one play-list or a folder of play-lists can be selected to copy them together.
 	 * @param e The ActionEvent that is passed when the button is clicked
 	 */
 	private void setM3uButton(ActionEvent e){
 		//Open a file chooser
 		JFileChooser c = new JFileChooser();
+		c.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+		c.setMultiSelectionEnabled(true);
     	int result = c.showOpenDialog(view.getFrame());
     	
     	//Check if a valid selection has been made
     	if(result == JFileChooser.APPROVE_OPTION){
+    		List<File> playlists = new ArrayList<>();
+    		
+    		for(File selected : c.getSelectedFiles()){
+    			playlists.addAll(PlaylistBatch.find(selected));
+    		}
+    		
     		try{
-    			model.m3uSelected(c.getSelectedFile());
+    			model.playlistsSelected(playlists);
+    			
+    			if(playlists.size() > 1)
+    				writeError(playlists.size() + " play-lists will be copied together\n");
     		}catch(Exception ex){
     			writeError(ex.getMessage());
     		}
@@ -136,7 +189,7 @@ public class Controller implements Runnable{
 	
 	/**
 	 * This is the function that is called when the set target button is pressed. It opens a file browser to select the
-	 * target folder.
+	 * target folder. More than one folder can be selected to copy the songs to all of them at once.
 	 * @param e The ActionEvent that is passed when the button is clicked
 	 */
 	private void setTargetButton(ActionEvent e){
@@ -144,11 +197,22 @@ public class Controller implements Runnable{
 		JFileChooser c = new JFileChooser();
 		c.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);//Only accept folders
 		c.setAcceptAllFileFilterUsed(false);
+		c.setMultiSelectionEnabled(true);
 		
     	int result = c.showOpenDialog(view.getFrame());
     	
-    	if(result == JFileChooser.APPROVE_OPTION)
-    		model.targetSelected(c.getSelectedFile());
+    	if(result == JFileChooser.APPROVE_OPTION){
+    		File[] folders = c.getSelectedFiles();
+    		
+    		//Some look and feels only fill the single selection
+    		if(folders.length == 0)
+    			folders = new File[]{c.getSelectedFile()};
+    		
+    		model.targetsSelected(folders);
+    		
+    		if(folders.length > 1)
+    			writeError("Songs will be copied to " + folders.length + " target folders\n");
+    	}
 	}
 	
 	/**
@@ -157,6 +221,27 @@ public class Controller implements Runnable{
 	 * @param e The ActionEvent that is passed when the button is clicked
 	 */
 	private void setStartButton(ActionEvent e){
+		//Check the number of workers, an empty box means it will be picked for the target device
+		int workers = 0;
+		
+		if(!view.getWorkers().trim().isEmpty()){
+			try{
+				workers = Integer.parseInt(view.getWorkers().trim());
+			}catch(Exception ex){
+				writeError("You must enter an integer for the number of threads or leave it empty\n");
+				return;
+			}
+		}
+		
+		model.setWorkers(workers);
+		
+		if(!setRateLimit())
+			return;
+		
+		model.setIncremental(view.isIncremental(), view.isHashing());
+		model.setRewrite(view.isRewriting(), null);
+		model.setVerify(view.isVerifying() ? StreamChecksum.CRC32C : null, true);
+		
 		//Determine which copying option to use
 		if(view.isRecursive()){
 			//Check user input
@@ -200,37 +285,87 @@ public class Controller implements Runnable{
 	}
 	
 	/**
-	 * This function is called if we receive a "not enough space on disk" error. We will stop immediately since we
-	 * won't be deleting any files and there is no need to keep trying to copy files.
+	 * Prints the given string to the GUI console. This can be called from any thread, the ProgressReporter prints it
+	 * on the EDT.
+	 * @param message String that will be printed to the GUI console
+	 */
+	private void writeError(String message){
+		reporter.write(message);
+	}
+	
+	/* (non-Javadoc)
+	 * @see models.CopyListener#songProcessed(models.CopyResult)
+	 * 
+	 * This is called by the copy workers after processing each song. The progress bar shows the progress and the
+	 * errors are printed after copying stops so nothing is printed here.
+	 */
+	@Override
+	public void songProcessed(CopyResult result){
+	}
+	
+	/* (non-Javadoc)
+	 * @see models.CopyListener#messageReported(java.lang.String)
+	 */
+	@Override
+	public void messageReported(String message){
+		writeError(message);
+	}
+	
+	/**
+	 * This is called after copying stops to let the user know about the final progress.
 	 */
-	private void handleNoSpace(){
-		model.isRunning = false;
-		writeError("There is not enough space on the disk. Stopping now!");
+	private void checkProgress(){
+		writeError("Processed "+model.done+" of "+model.total+"\n");
+		writeError("Stopped. If you see no errors, all songs should be copied.\n");
 	}
 	
 	/**
-	 * Prints the given string to the GUI console.
-	 * @param message String that will be printed to the GUI console
+	 * Reads the whole play-list and checks if the songs fit in the target folders. The result is printed for each
+	 * target.
+	 * @return False if the songs don't fit in at least one of the targets and copying shouldn't start
 	 */
-	private void writeError(String message){
-		if(message!= null){
-			JTextArea console = view.getConsole();
-			
-			console.append(message);
-			console.setCaretPosition(console.getText().length() - 1);
+	private boolean checkSpace(){
+		boolean fits = true;
+		
+		writeError("Checking the space needed by the songs\n");
+		
+		try{
+			for(SpacePlanner.Report report : model.planSpace()){
+				writeError(report.toString());
+				fits &= report.fits();
+			}
+		}catch(IOException e){
+			//Copying will find the same problem and report it for each song
+			writeError("Unable to check the space needed: " + e.getMessage() + "\n");
+		}catch(InterruptedException e){
+			return false;
 		}
+		
+		if(!fits)
+			writeError("There is not enough space on the disk. Nothing was copied.\n");
+		
+		return fits;
 	}
 	
 	/**
-	 * This is called after processing each song to let the user know about the progress.
+	 * Prints how much data has been copied and how fast.
+	 * @param elapsed The time spent copying in nanoseconds
 	 */
-	private void checkProgress(){
-		if(model.isRunning)
-			writeError("Processed "+model.done+" of "+model.total+"\n");
-		else
-			writeError("Stopped. If you see no errors, all songs should be copied.\n");
+	private void writeThroughput(long elapsed){
+		double megabytes = model.getBytesCopied() / (1024.0 * 1024.0);
+		double seconds = Math.max(elapsed / 1e9, 0.001);
+		
+		writeError(String.format("Copied %.1f MB in %.1f seconds (%.1f MB/s) using %s copy\n", megabytes, seconds,
+				megabytes / seconds, model.getCopyStrategy().getName()));
+		
+		if(model.skipped > 0)
+			writeError("Skipped " + model.skipped + " songs that were already copied\n");
+		
+		if(model.duplicated > 0)
+			writeError("Found " + model.duplicated + " duplicate songs, each song was copied once\n"
+					+ model.getDuplicates());
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see java.lang.Runnable#run()
 	 * 
@@ -238,25 +373,32 @@ public class Controller implements Runnable{
 	 */
 	@Override
 	public void run() {
-		String output;
-		while(model.isRunning){
-			output = model.copyFile();
-			
-			if(output != null){
-				//Stop immediately if there is no space on the disk
-				if(output.compareTo("No space") == 1){
-					handleNoSpace();
-					break;
-				}else{
-					writeError(output);
-				}
-			}
-			
-			checkProgress();
+		CopyEngine engine = new CopyEngine(model);
+		long start = System.nanoTime();
+		reporter.start();
+		
+		//Find out if everything fits before copying anything, only when asked since it reads the whole play-list first
+		if(view.isCheckingSpace() && !checkSpace()){
+			model.isRunning = false;
+			reporter.stop();
+			return;
+		}
+		
+		try{
+			//A target that is full or removed is stopped immediately, the errors tell which one and why
+			engine.run(this);
+		}catch(InterruptedException e){
+			engine.cancel();
 		}
 		
+		checkProgress();
+		writeThroughput(System.nanoTime() - start);
+		
 		//When we have processed all of the songs we will print to the GUI console which songs we couldn't copy.
 		//The line numbers of these songs in the play-list file will be printed.
+		writeError(model.getMetrics().describe());
+		writeError(model.getPlaylistReport());
 		writeError(model.getErrors());
+		reporter.stop();
 	}
 }
@@ -0,0 +1,247 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package controllers;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.swing.JProgressBar;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+
+import models.Model;
+import views.View;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the ProgressReporter class that shows messages and the progress of the copy workers in the GUI. Workers only
+ * add their messages to a queue, the queue is emptied into the console and the progress bar is updated a few times a
+ * second on the EDT. The console only keeps the last lines so it doesn't grow without a limit on long play-lists.
+ */
+public class ProgressReporter implements ActionListener{
+	//How often the GUI is updated in milliseconds
+	private static final int INTERVAL = 250;
+	//The number of lines kept in the console
+	private static final int HISTORY = 1000;
+	//How much the latest measurement counts for the speeds shown
+	private static final double SMOOTHING = 0.3;
+	
+	private final View view;
+	private final Model model;
+	private final ConcurrentLinkedQueue<String> messages = new ConcurrentLinkedQueue<>();
+	private final Timer timer;
+	
+	private volatile boolean tracking = false;
+	private long lastTime;
+	private int lastDone;
+	private long lastBytes;
+	private double filesPerSecond;
+	private double bytesPerSecond;
+	
+	/**
+	 * @param view The View class that has the console and the progress bar
+	 * @param model The Model class that keeps the progress of the copy workers
+	 */
+	public ProgressReporter(View view, Model model){
+		this.view = view;
+		this.model = model;
+		
+		timer = new Timer(INTERVAL, this);
+		timer.setCoalesce(true);
+	}
+	
+	/**
+	 * Adds a message to the console. This can be called from any thread, messages from the EDT are shown immediately
+	 * and the others are shown with the next update while copying.
+	 * @param message String that will be printed to the GUI console
+	 */
+	public void write(String message){
+		if(message == null || message.isEmpty())
+			return;
+		
+		messages.add(message);
+		
+		if(SwingUtilities.isEventDispatchThread()){
+			flush();
+		}else if(!tracking){
+			//The timer isn't running so nothing else will print this
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Starts updating the progress bar. This is called when copying starts.
+	 */
+	public void start(){
+		lastTime = System.nanoTime();
+		lastDone = model.done;
+		lastBytes = model.getBytesCopied();
+		filesPerSecond = 0;
+		bytesPerSecond = 0;
+		tracking = true;
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				view.getProgressBar().setValue(0);
+				view.getProgressBar().setIndeterminate(!model.isTotalKnown());
+				timer.start();
+			}
+		});
+	}
+	
+	/**
+	 * Stops updating the progress bar after showing the final progress and all remaining messages. This is called when
+	 * copying stops.
+	 */
+	public void stop(){
+		tracking = false;
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				timer.stop();
+				flush();
+				showProgress(false);
+			}
+		});
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+	 * 
+	 * This is called by the timer on the EDT.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e){
+		flush();
+		
+		if(tracking)
+			showProgress(true);
+	}
+	
+	/**
+	 * Appends all waiting messages to the console at once and removes the oldest lines if there are too many. This
+	 * must be called on the EDT.
+	 */
+	private void flush(){
+		if(messages.isEmpty())
+			return;
+		
+		StringBuilder text = new StringBuilder();
+		String message;
+		
+		while((message = messages.poll()) != null){
+			text.append(message);
+		}
+		
+		JTextArea console = view.getConsole();
+		console.append(text.toString());
+		
+		int excess = console.getLineCount() - HISTORY;
+		
+		if(excess > 0){
+			try{
+				console.replaceRange(null, 0, console.getLineStartOffset(excess));
+			}catch(BadLocationException ex){
+				//The lines were just counted so they are there
+			}
+		}
+		
+		console.setCaretPosition(console.getDocument().getLength());
+	}
+	
+	/**
+	 * Updates the progress bar with the number of songs processed, the speeds and the time left. This must be called
+	 * on the EDT.
+	 * @param running Whether the workers are still copying
+	 */
+	private void showProgress(boolean running){
+		JProgressBar bar = view.getProgressBar();
+		long now = System.nanoTime();
+		int done = model.done;
+		long bytes = model.getBytesCopied();
+		double seconds = (now - lastTime) / 1e9;
+		
+		if(running && seconds > 0){
+			filesPerSecond = smooth(filesPerSecond, (done - lastDone) / seconds);
+			bytesPerSecond = smooth(bytesPerSecond, (bytes - lastBytes) / seconds);
+			lastTime = now;
+			lastDone = done;
+			lastBytes = bytes;
+		}
+		
+		String text = String.format("%d songs, %.1f songs/s, %.1f MB/s", done, filesPerSecond,
+				bytesPerSecond / (1024 * 1024));
+		
+		if(model.isTotalKnown() && model.total > 0){
+			int total = model.total;
+			bar.setIndeterminate(false);
+			bar.setMaximum(total);
+			bar.setValue(done);
+			text = done + " of " + text;
+			
+			if(running && filesPerSecond > 0)
+				text += ", " + formatTime((long) ((total - done) / filesPerSecond)) + " left";
+		}
+		
+		if(!running){
+			bar.setIndeterminate(false);
+			text = "Finished " + text;
+		}
+		
+		bar.setString(text);
+	}
+	
+	/**
+	 * @param average The current average
+	 * @param latest The latest measurement
+	 * @return The new average
+	 */
+	private static double smooth(double average, double latest){
+		if(average == 0)
+			return latest;
+		
+		return average + SMOOTHING * (latest - average);
+	}
+	
+	/**
+	 * @param seconds A duration in seconds
+	 * @return The duration as hours, minutes and seconds
+	 */
+	private static String formatTime(long seconds){
+		return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+}
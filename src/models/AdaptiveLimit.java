@@ -0,0 +1,149 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the AdaptiveLimit class that limits the number of songs copied to a target at the same time. When songs
+ * keep failing close together the device is most likely struggling, so one worker less is allowed to copy until
+ * enough songs have been copied without errors. The workers of the target share the limit, it works like a semaphore
+ * whose number of permits changes. It waits with a lock instead of synchronized so virtual threads can wait on it
+ * without holding on to their carrier thread.
+ */
+public class AdaptiveLimit{
+	//This many errors within the window lower the limit
+	private static final int CLUSTER = 3;
+	//The time the errors of a cluster have to be in, in nanoseconds
+	private static final long WINDOW = 10000000000L;
+	//This many songs have to be copied without errors before the limit is raised again
+	private static final int RECOVERY = 32;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private final int max;
+	private int limit;
+	private int active = 0;
+	private int successes = 0;
+	//The times of the last errors, the oldest one is overwritten
+	private final long[] errors = new long[CLUSTER];
+	private int count = 0;
+	
+	/**
+	 * @param max The number of workers of the target, the limit never goes above this
+	 */
+	public AdaptiveLimit(int max){
+		this.max = Math.max(1, max);
+		this.limit = this.max;
+	}
+	
+	/**
+	 * Waits until the worker is allowed to copy a song. This has to be followed by release.
+	 * @throws InterruptedException If the worker is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException{
+		lock.lockInterruptibly();
+		
+		try{
+			while(active >= limit){
+				released.await();
+			}
+			
+			active++;
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Tells that a worker is done with its song.
+	 */
+	public void release(){
+		lock.lock();
+		
+		try{
+			active--;
+			released.signalAll();
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Counts an error of the device, the limit is lowered if it is part of a cluster.
+	 */
+	public void failed(){
+		long now = System.nanoTime();
+		lock.lock();
+		
+		try{
+			errors[count % CLUSTER] = now;
+			count++;
+			successes = 0;
+			
+			//The next slot has the oldest of the last errors
+			if(count >= CLUSTER && now - errors[count % CLUSTER] <= WINDOW && limit > 1){
+				limit--;
+				count = 0;
+			}
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Counts a song that was copied without errors, the limit is raised after enough of them.
+	 */
+	public void succeeded(){
+		lock.lock();
+		
+		try{
+			if(limit < max && ++successes >= RECOVERY){
+				limit++;
+				successes = 0;
+				released.signalAll();
+			}
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return The number of songs that can be copied at the same time now
+	 */
+	public int getLimit(){
+		lock.lock();
+		
+		try{
+			return limit;
+		}finally{
+			lock.unlock();
+		}
+	}
+}
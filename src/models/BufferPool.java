@@ -0,0 +1,126 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the BufferPool class that keeps the direct buffers songs are copied through. Direct buffers are costly to
+ * allocate and are only freed when the garbage collector gets to them, so they are made once and reused. The pool
+ * never holds more than its memory limit, a copy that needs a buffer while all of them are in use waits for one, so a
+ * large play-list or many workers can't run out of memory. It waits with a lock instead of synchronized so virtual
+ * threads can wait on it without holding on to their carrier thread.
+ */
+public class BufferPool{
+	//The size of each buffer, large enough for a hard disk to read it in one go
+	public static final int BUFFER_SIZE = 1024 * 1024;
+	//The memory shared by the copies of all targets
+	public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+	
+	private static final BufferPool SHARED = new BufferPool(BUFFER_SIZE, DEFAULT_MEMORY);
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private final int size;
+	private final int max;
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+	private int created = 0;
+	
+	/**
+	 * @param size The size of each buffer in bytes
+	 * @param memory The most memory the buffers can take in bytes, there are at least two buffers
+	 */
+	public BufferPool(int size, long memory){
+		this.size = size;
+		this.max = (int)Math.max(2, memory / size);
+	}
+	
+	/**
+	 * @return The pool shared by the copy strategies
+	 */
+	public static BufferPool shared(){
+		return SHARED;
+	}
+	
+	/**
+	 * Takes an empty buffer from the pool, waiting until one is given back if they are all in use.
+	 * @return The buffer, it has to be given back with release
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public ByteBuffer acquire() throws InterruptedException{
+		lock.lockInterruptibly();
+		
+		try{
+			while(free.isEmpty() && created >= max){
+				released.await();
+			}
+			
+			if(!free.isEmpty())
+				return free.pop();
+			
+			created++;
+		}finally{
+			lock.unlock();
+		}
+		
+		return ByteBuffer.allocateDirect(size);
+	}
+	
+	/**
+	 * Gives a buffer back to the pool.
+	 * @param buffer A buffer taken with acquire
+	 */
+	public void release(ByteBuffer buffer){
+		buffer.clear();
+		lock.lock();
+		
+		try{
+			free.push(buffer);
+			released.signal();
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return The size of each buffer in bytes
+	 */
+	public int getBufferSize(){
+		return size;
+	}
+	
+	/**
+	 * @return The number of buffers that can be in use at the same time
+	 */
+	public int getCapacity(){
+		return max;
+	}
+}
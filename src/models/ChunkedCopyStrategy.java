@@ -0,0 +1,108 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This copies songs through a buffer in small chunks. Copying directly between the channels moves a whole song at
+ * once and the program never sees the data, going through a buffer lets each chunk wait for the rate limit of the
+ * target, so a shared network drive stays usable while copying, and lets the checksum of the song be computed from
+ * the same reads that copy it. Each target has its own instance.
+ */
+public class ChunkedCopyStrategy implements CopyStrategy{
+	public static final String NAME = "chunked";
+	
+	//Small enough for the rate to stay even at a few hundred kilobytes per second
+	private static final int CHUNK = 64 * 1024;
+	
+	private final RateLimiter limiter;
+	
+	/**
+	 * @param limiter The limit of the bytes per second of the target
+	 */
+	public ChunkedCopyStrategy(RateLimiter limiter){
+		this.limiter = limiter;
+	}
+	
+	@Override
+	public long copy(File source, File destination) throws IOException{
+		return copy(source, destination, null);
+	}
+	
+	/**
+	 * Copies the song and keeps its last modified date, the checksum is updated with every chunk that is read.
+	 * @param source The song that will be copied
+	 * @param destination The file the song will be copied to, it is overwritten if it exists
+	 * @param checksum The checksum of the song or null if it isn't needed
+	 * @return The number of bytes that were copied
+	 * @throws IOException If the song couldn't be copied
+	 */
+	public long copy(File source, File destination, StreamChecksum checksum) throws IOException{
+		long copied = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+		
+		try(FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			while(in.read(buffer) != -1){
+				buffer.flip();
+				
+				try{
+					limiter.acquire(buffer.remaining());
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+				}
+				
+				if(checksum != null)
+					checksum.update(buffer);
+				
+				while(buffer.hasRemaining()){
+					copied += out.write(buffer);
+				}
+				
+				buffer.clear();
+			}
+		}
+		
+		destination.setLastModified(source.lastModified());
+		
+		return copied;
+	}
+	
+	@Override
+	public String getName(){
+		return NAME;
+	}
+}
@@ -0,0 +1,543 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the CompactPlaylist class that keeps the songs read from the play-lists without any objects for each song,
+ * so play-lists with millions of songs can be planned and checked for duplicates in a small heap. Each folder is kept
+ * once in a tree where a folder only has its name and its parent. Each song is a record of the same size with its
+ * folder, its name, its place in the play-list, its size, its status and the song before it with the same size. The
+ * records and the names are kept in blocks, the first blocks are on the heap and the rest are mapped from a spill
+ * file if there is a spill folder.
+ * Songs are added in play-list order by one thread and PlaylistEntry objects are made again when they are needed.
+ */
+public class CompactPlaylist implements Closeable{
+	//The bits of the status of a song, if its file was found when it was planned
+	public static final int FOUND = 1;
+	public static final int MISSING = 2;
+	//The bits of the status of a song when contents are compared, if its size is kept for the comparison, if its
+	//contents have been compared and if it has been reported as a duplicate of a song with the same contents
+	public static final int SIZED = 4;
+	public static final int COMPARED = 8;
+	public static final int REPORTED = 16;
+	//The size of a song that hasn't been read
+	public static final long UNKNOWN = -1;
+	//The original of a song that isn't a duplicate and the parent of a folder at the top
+	public static final int NONE = -1;
+	
+	//The size of each block of records or names
+	private static final int BLOCK = 1024 * 1024;
+	//The number of blocks of each kind kept on the heap before the rest are mapped from the spill file
+	private static final int HEAP_BLOCKS = 4;
+	//The place of each field in the record of a song
+	private static final int FOLDER = 0;
+	private static final int NAME = 4;
+	private static final int PATH = 8;
+	private static final int PLAYLIST = 12;
+	private static final int LINE = 16;
+	private static final int DURATION = 20;
+	private static final int TITLE = 24;
+	private static final int ORIGINAL = 28;
+	private static final int SIZE = 32;
+	private static final int STATUS = 40;
+	private static final int SAME_SIZE = 41;
+	private static final int RECORD = 45;
+	private static final int RECORDS_PER_BLOCK = BLOCK / RECORD;
+	
+	private final File spill;
+	private final Blocks records = new Blocks(".songs");
+	private final Blocks names = new Blocks(".names");
+	private int namesEnd = 0;
+	private volatile int size = 0;
+	//The tree of folders, the name of each folder is kept with the names of the songs
+	private volatile int[] folderParents = new int[256];
+	private volatile int[] folderNames = new int[256];
+	private volatile int folders = 0;
+	//Finds a folder by the hash of its parent and its name while songs are added
+	private final LongIntMap children = new LongIntMap(1024);
+	private File lastAdded = null;
+	private int lastAddedIndex = NONE;
+	private volatile Folder recent = null;
+	
+	/**
+	 * This is the last folder that was made again and its index, the songs of an album usually follow each other.
+	 */
+	private static class Folder{
+		final int index;
+		final File file;
+		
+		Folder(int index, File file){
+			this.index = index;
+			this.file = file;
+		}
+	}
+	
+	/**
+	 * These are the blocks of one kind, the blocks are never moved once they are added.
+	 */
+	private class Blocks{
+		private final String suffix;
+		private volatile ByteBuffer[] blocks = new ByteBuffer[0];
+		private File file = null;
+		private FileChannel channel = null;
+		private int mapped = 0;
+		
+		/**
+		 * @param suffix The suffix of the spill file of these blocks
+		 */
+		Blocks(String suffix){
+			this.suffix = suffix;
+		}
+		
+		/**
+		 * @param index The index of a block
+		 * @return The block
+		 */
+		ByteBuffer get(int index){
+			return blocks[index];
+		}
+		
+		/**
+		 * @return The number of blocks
+		 */
+		int count(){
+			return blocks.length;
+		}
+		
+		/**
+		 * Adds an empty block, it is mapped from the spill file once there are enough blocks on the heap.
+		 * @return The new block
+		 * @throws IOException If the spill file can't be made larger or there would be too many blocks
+		 */
+		ByteBuffer add() throws IOException{
+			ByteBuffer[] current = blocks;
+			
+			//The places of the names have to fit in an int
+			if(current.length >= Integer.MAX_VALUE / BLOCK)
+				throw new IOException("The play-list is too large");
+			
+			ByteBuffer block;
+			
+			if(spill == null || current.length < HEAP_BLOCKS){
+				block = ByteBuffer.allocate(BLOCK);
+			}else{
+				if(channel == null){
+					file = File.createTempFile("m3t-", suffix, spill);
+					file.deleteOnExit();
+					channel = new RandomAccessFile(file, "rw").getChannel();
+				}
+				
+				block = channel.map(FileChannel.MapMode.READ_WRITE, (long)mapped * BLOCK, BLOCK);
+				mapped++;
+			}
+			
+			ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+			grown[current.length] = block;
+			blocks = grown;
+			
+			return block;
+		}
+		
+		/**
+		 * Drops the blocks and deletes the spill file. The mapped blocks are freed by the garbage collector.
+		 */
+		void close(){
+			blocks = new ByteBuffer[0];
+			
+			if(channel != null){
+				try{
+					channel.close();
+				}catch(IOException e){
+					//The file is deleted anyway
+				}
+				
+				file.delete();
+				channel = null;
+			}
+		}
+	}
+	
+	/**
+	 * @param spill The folder of the spill files of large play-lists or null to keep everything on the heap
+	 */
+	public CompactPlaylist(File spill){
+		this.spill = spill;
+	}
+	
+	/**
+	 * Adds the next song of the play-list.
+	 * @param entry The song
+	 * @return The index of the song
+	 * @throws IOException If the spill file can't be made larger
+	 */
+	public synchronized int add(PlaylistEntry entry) throws IOException{
+		File song = entry.getSong();
+		File parent = song.getParentFile();
+		String full = song.getPath();
+		String written = entry.getPath();
+		
+		if(parent == null){
+			lastAddedIndex = NONE;
+		}else if(!parent.equals(lastAdded)){
+			lastAddedIndex = folder(parent);
+		}
+		
+		lastAdded = parent;
+		int folder = lastAddedIndex;
+		int name = name(parent == null ? full : song.getName());
+		//The path written in the play-list is usually the end of the path of the song, only its length is kept then
+		int path = full.endsWith(written) ? -written.length() - 1 : name(written);
+		int title = entry.getTitle() == null ? NONE : name(entry.getTitle());
+		int index = size;
+		
+		if(index % RECORDS_PER_BLOCK == 0)
+			records.add();
+		
+		ByteBuffer block = records.get(index / RECORDS_PER_BLOCK);
+		int at = index % RECORDS_PER_BLOCK * RECORD;
+		block.putInt(at + FOLDER, folder);
+		block.putInt(at + NAME, name);
+		block.putInt(at + PATH, path);
+		block.putInt(at + PLAYLIST, entry.getPlaylist());
+		block.putInt(at + LINE, entry.getLine());
+		block.putInt(at + DURATION, entry.getDuration());
+		block.putInt(at + TITLE, title);
+		block.putInt(at + ORIGINAL, NONE);
+		block.putLong(at + SIZE, UNKNOWN);
+		block.put(at + STATUS, (byte)0);
+		block.putInt(at + SAME_SIZE, NONE);
+		size = index + 1;
+		
+		return index;
+	}
+	
+	/**
+	 * @return The number of songs added so far
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return A new PlaylistEntry of the song, it is equal to the one that was added
+	 */
+	public PlaylistEntry get(int index){
+		File song = getSong(index);
+		int path = getInt(index, PATH);
+		int title = getInt(index, TITLE);
+		String full = song.getPath();
+		
+		return new PlaylistEntry(song, path < 0 ? full.substring(full.length() + path + 1) : name(path),
+				getPlaylist(index), getLine(index), getInt(index, DURATION), title == NONE ? null : name(title));
+	}
+	
+	/**
+	 * Finds a song by its play-list and line. The songs are added in play-list order so this is a binary search.
+	 * @param entry A song from the play-list
+	 * @return The index of the song or NONE if it hasn't been added
+	 */
+	public int indexOf(PlaylistEntry entry){
+		int low = 0;
+		int high = size - 1;
+		
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			int compared = Integer.compare(getPlaylist(middle), entry.getPlaylist());
+			
+			if(compared == 0)
+				compared = Integer.compare(getLine(middle), entry.getLine());
+			
+			if(compared < 0)
+				low = middle + 1;
+			else if(compared > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		
+		return NONE;
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The song with its path resolved against the folder of the play-list
+	 */
+	public File getSong(int index){
+		int folder = getInt(index, FOLDER);
+		String name = name(getInt(index, NAME));
+		
+		return folder == NONE ? new File(name) : new File(getFolderFile(folder), name);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The file name of the song
+	 */
+	public String getName(int index){
+		return name(getInt(index, NAME));
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The index of the folder of the song or NONE if the song has no folder in its path
+	 */
+	public int getFolder(int index){
+		return getInt(index, FOLDER);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The index of the play-list of the song
+	 */
+	public int getPlaylist(int index){
+		return getInt(index, PLAYLIST);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The line number of the song in its play-list
+	 */
+	public int getLine(int index){
+		return getInt(index, LINE);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The size of the song in bytes or UNKNOWN if it hasn't been read
+	 */
+	public long getSize(int index){
+		return records.get(index / RECORDS_PER_BLOCK).getLong(index % RECORDS_PER_BLOCK * RECORD + SIZE);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @param bytes The size of the song in bytes
+	 */
+	public void setSize(int index, long bytes){
+		records.get(index / RECORDS_PER_BLOCK).putLong(index % RECORDS_PER_BLOCK * RECORD + SIZE, bytes);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The status bits of the song
+	 */
+	public synchronized int getStatus(int index){
+		return records.get(index / RECORDS_PER_BLOCK).get(index % RECORDS_PER_BLOCK * RECORD + STATUS);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @param status The status bits that are added to the song
+	 */
+	public synchronized void addStatus(int index, int status){
+		ByteBuffer block = records.get(index / RECORDS_PER_BLOCK);
+		int at = index % RECORDS_PER_BLOCK * RECORD + STATUS;
+		block.put(at, (byte)(block.get(at) | status));
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The index of the first song that is the same as this one or NONE if it isn't a duplicate
+	 */
+	public int getOriginal(int index){
+		return getInt(index, ORIGINAL);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @param original The index of the first song that is the same as this one
+	 */
+	public void setOriginal(int index, int original){
+		records.get(index / RECORDS_PER_BLOCK).putInt(index % RECORDS_PER_BLOCK * RECORD + ORIGINAL, original);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @return The index of the last song before this one with the same size or NONE if there is none
+	 */
+	public int getSameSize(int index){
+		return getInt(index, SAME_SIZE);
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @param earlier The index of the last song before this one with the same size
+	 */
+	public void setSameSize(int index, int earlier){
+		records.get(index / RECORDS_PER_BLOCK).putInt(index % RECORDS_PER_BLOCK * RECORD + SAME_SIZE, earlier);
+	}
+	
+	/**
+	 * @return The number of folders the songs are in, including the folders above them
+	 */
+	public int getFolderCount(){
+		return folders;
+	}
+	
+	/**
+	 * @param folder The index of a folder
+	 * @return The folder
+	 */
+	public File getFolderFile(int folder){
+		Folder last = recent;
+		
+		if(last != null && last.index == folder)
+			return last.file;
+		
+		int parent = folderParents[folder];
+		String name = name(folderNames[folder]);
+		File file = parent == NONE ? new File(name) : new File(getFolderFile(parent), name);
+		recent = new Folder(folder, file);
+		
+		return file;
+	}
+	
+	/**
+	 * Drops the songs and deletes the spill files. The songs can't be read after this.
+	 */
+	@Override
+	public synchronized void close(){
+		records.close();
+		names.close();
+		size = 0;
+	}
+	
+	/**
+	 * @param index The index of a song
+	 * @param field The place of an int field in the record
+	 * @return The value of the field
+	 */
+	private int getInt(int index, int field){
+		return records.get(index / RECORDS_PER_BLOCK).getInt(index % RECORDS_PER_BLOCK * RECORD + field);
+	}
+	
+	/**
+	 * Finds a folder in the tree, adding it and the folders above it if they aren't there.
+	 * @param folder A folder
+	 * @return The index of the folder
+	 * @throws IOException If the spill file can't be made larger
+	 */
+	private int folder(File folder) throws IOException{
+		File above = folder.getParentFile();
+		int parent = above == null ? NONE : folder(above);
+		String name = above == null ? folder.getPath() : folder.getName();
+		long key = LongIntMap.hash(name) * 31 + parent;
+		int known = children.get(key);
+		
+		//A different folder with the same hash is very unlikely, it is added without being found again
+		if(known != LongIntMap.MISSING && folderParents[known] == parent && name(folderNames[known]).equals(name))
+			return known;
+		
+		int index = folders;
+		
+		if(index == folderParents.length){
+			folderParents = Arrays.copyOf(folderParents, index * 2);
+			folderNames = Arrays.copyOf(folderNames, index * 2);
+		}
+		
+		folderParents[index] = parent;
+		folderNames[index] = name(name);
+		folders = index + 1;
+		children.putIfAbsent(key, index);
+		
+		return index;
+	}
+	
+	/**
+	 * Keeps a name as UTF-8 after its length. Names never cross the end of a block.
+	 * @param text A name, path or title
+	 * @return The place of the name
+	 * @throws IOException If the name is too long or the spill file can't be made larger
+	 */
+	private int name(String text) throws IOException{
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		int needed = bytes.length + 5;
+		
+		if(needed > BLOCK)
+			throw new IOException("A line of the play-list is too long");
+		
+		if(names.count() == 0 || namesEnd + needed > BLOCK){
+			names.add();
+			namesEnd = 0;
+		}
+		
+		int block = names.count() - 1;
+		ByteBuffer buffer = names.get(block).duplicate();
+		int offset = block * BLOCK + namesEnd;
+		buffer.position(namesEnd);
+		
+		//The length takes one byte for names shorter than 128 bytes
+		for(int length = bytes.length;; length >>>= 7){
+			if(length < 0x80){
+				buffer.put((byte)length);
+				break;
+			}
+			
+			buffer.put((byte)(length | 0x80));
+		}
+		
+		buffer.put(bytes);
+		namesEnd = buffer.position();
+		
+		return offset;
+	}
+	
+	/**
+	 * @param offset The place of a name
+	 * @return The name
+	 */
+	private String name(int offset){
+		ByteBuffer buffer = names.get(offset / BLOCK).duplicate();
+		buffer.position(offset % BLOCK);
+		int length = 0;
+		byte read;
+		
+		for(int shift = 0;; shift += 7){
+			read = buffer.get();
+			length |= (read & 0x7F) << shift;
+			
+			if(read >= 0)
+				break;
+		}
+		
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
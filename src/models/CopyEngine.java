@@ -0,0 +1,349 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the CopyEngine class that copies the songs in the play-list to every target folder. The play-list is read
+ * once on the calling thread and each song is added to the queue of every target. Each target has its own workers
+ * that copy the songs in its queue, so every target goes as fast as its device allows until its queue is far ahead
+ * of the slowest one. Since the targets copy the same songs at about the same time, the sources are mostly read from
+ * the cache of the operating system after the first target has read them.
+ */
+public class CopyEngine{
+	//The number of songs each target can have waiting in its queue
+	public static final int QUEUE_CAPACITY = 4096;
+	//With virtual threads this many times the number of platform workers wait for the file system at the same time
+	public static final int VIRTUAL_FACTOR = 16;
+	
+	private final Model model;
+	private List<TargetDevice> devices = new ArrayList<>();
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * @param model The Model class that has the play-list and copies the songs
+	 */
+	public CopyEngine(Model model){
+		this.model = model;
+	}
+	
+	/**
+	 * Picks the number of workers for the given target folder. Memory cards and other FAT formatted devices get slower
+	 * when they are written to from many places, network drives can keep more copies going at the same time.
+	 * @param target The folder the songs will be copied to
+	 * @return The number of songs that should be copied at the same time
+	 */
+	public static int defaultWorkers(File target){
+		int cores = Runtime.getRuntime().availableProcessors();
+		
+		if(target == null)
+			return cores;
+		
+		try{
+			FileStore store = Files.getFileStore(target.toPath());
+			String type = store.type().toLowerCase();
+			
+			if(type.contains("fat") || type.equals("msdos") || type.equals("fuseblk"))
+				return Math.min(2, cores);
+			
+			if(type.contains("nfs") || type.contains("cifs") || type.contains("smb") || type.contains("sshfs"))
+				return cores * 2;
+		}catch(IOException e){
+			//We can't tell what kind of device this is, the number of cores will do
+		}
+		
+		return cores;
+	}
+	
+	/**
+	 * Copies all the songs and blocks until every worker is finished. The Model is told before the workers start and
+	 * after they are finished so it can load and save what it keeps in the target folders.
+	 * @param listener This will be told about each song that has been processed
+	 * @return False if copying to any of the targets was stopped because of a song that failed fatally, like when
+	 * there is no space left in it, Model.isStopped tells which cause it was
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for the workers
+	 */
+	public boolean run(final CopyListener listener) throws InterruptedException{
+		boolean finished = false;
+		String message = model.startRun(QUEUE_CAPACITY);
+		
+		if(message != null)
+			listener.messageReported(message);
+		
+		//The play-list is read here if the songs are copied in the order of the source disk
+		message = model.schedule();
+		
+		if(message != null)
+			listener.messageReported(message);
+		
+		//If the play-list has been planned all folders are created before the songs
+		message = model.prepareFolders();
+		
+		if(message != null)
+			listener.messageReported(message);
+		
+		devices = model.getTargets();
+		
+		if(model.isVirtualThreads() && !VirtualThreads.isSupported())
+			listener.messageReported("Virtual threads need Java 21 or newer, copying with platform threads\n");
+		
+		for(final TargetDevice device : devices){
+			ExecutorService executor = model.isVirtualThreads() ? VirtualThreads.newPerTaskExecutor() : null;
+			
+			if(executor != null){
+				device.start(new Runnable() {
+					@Override
+					public void run() {
+						dispatch(device, listener);
+					}
+				}, executor);
+			}else{
+				device.start(new Runnable() {
+					@Override
+					public void run() {
+						work(device, listener);
+					}
+				});
+			}
+		}
+		
+		try{
+			finished = readPlaylist(listener);
+			
+			for(TargetDevice device : devices){
+				device.end();
+			}
+			
+			for(TargetDevice device : devices){
+				device.await();
+			}
+			
+			//Songs that kept failing are tried once more, a removable device may have recovered by now
+			for(TargetDevice device : devices){
+				retryDeferred(device, listener);
+			}
+			
+			//Duplicates are linked once the songs they are linked to are complete
+			for(TargetDevice device : devices){
+				model.linkDuplicates(device);
+			}
+		}catch(InterruptedException e){
+			cancel();
+			throw e;
+		}finally{
+			model.isRunning = false;
+			message = model.finishRun(finished && !cancelled);
+			
+			if(message != null)
+				listener.messageReported(message);
+		}
+		
+		for(TargetDevice device : devices){
+			if(device.getStopCause() != null)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the workers of all targets. Songs that are being copied are interrupted and the Model removes what was
+	 * written of them.
+	 */
+	public void cancel(){
+		cancelled = true;
+		model.isRunning = false;
+		
+		for(TargetDevice device : devices){
+			device.stop(null);
+		}
+	}
+	
+	/**
+	 * Reads the play-list and adds each song to the queue of every target that is still running.
+	 * @param listener This will be told if the play-list can't be read
+	 * @return True if the whole play-list has been read
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for a queue
+	 */
+	private boolean readPlaylist(CopyListener listener) throws InterruptedException{
+		while(model.isRunning){
+			PlaylistEntry entry;
+			
+			try{
+				entry = model.nextEntry();
+			}catch(IOException e){
+				listener.messageReported("Unable to read the play-list: " + e.getMessage() + "\n");
+				return false;
+			}
+			
+			if(entry == null)
+				return true;
+			
+			boolean taken = false;
+			PlaylistEntry original = model.findOriginal(entry);
+			boolean listed = model.isScheduled();
+			CopyResult result;
+			
+			for(TargetDevice device : devices){
+				if(!device.isRunning())
+					continue;
+				
+				//The songs are added to the play-lists in play-list order, even when they are copied in another order
+				if(!listed)
+					device.addToPlaylist(entry);
+				
+				if(original != null && (result = model.duplicate(entry, original, device)) != null){
+					taken = true;
+					listener.songProcessed(result);
+				}else if(device.put(entry)){
+					taken = true;
+				}
+			}
+			
+			//Every target has been stopped
+			if(!taken)
+				return false;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This is what every worker of a target does until there are no songs left.
+	 * @param device The target this worker copies songs to
+	 * @param listener This will be told about each song that has been processed
+	 */
+	private void work(TargetDevice device, CopyListener listener){
+		try{
+			PlaylistEntry entry;
+			
+			while((entry = device.take()) != null){
+				CopyResult result;
+				
+				//Fewer songs are copied at the same time while the device keeps failing
+				device.getLimit().acquire();
+				
+				try{
+					result = model.copyFile(entry, device, false);
+				}finally{
+					device.getLimit().release();
+				}
+				
+				if(!processed(result, device, listener))
+					return;
+			}
+		}catch(InterruptedException e){
+			//The target has been stopped
+		}
+	}
+	
+	/**
+	 * This is what the dispatcher of a target does with virtual threads. Each song gets its own thread, the limit of
+	 * the target caps the number of songs copied at the same time like a semaphore.
+	 * @param device The target the songs are copied to
+	 * @param listener This will be told about each song that has been processed
+	 */
+	private void dispatch(final TargetDevice device, final CopyListener listener){
+		try{
+			PlaylistEntry entry;
+			
+			while((entry = device.take()) != null){
+				final PlaylistEntry song = entry;
+				device.getLimit().acquire();
+				
+				try{
+					device.submit(new Runnable() {
+						@Override
+						public void run() {
+							try{
+								processed(model.copyFile(song, device, false), device, listener);
+							}finally{
+								device.getLimit().release();
+							}
+						}
+					});
+				}catch(RejectedExecutionException e){
+					//The target has been stopped
+					device.getLimit().release();
+					return;
+				}
+			}
+		}catch(InterruptedException e){
+			//The target has been stopped
+		}
+	}
+	
+	/**
+	 * Tries the songs that kept failing in a target once more, one at a time after a short wait. Songs that still
+	 * fail are reported as failed.
+	 * @param device The target
+	 * @param listener This will be told about each song that has been processed
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	private void retryDeferred(TargetDevice device, CopyListener listener) throws InterruptedException{
+		List<PlaylistEntry> entries = device.takeDeferred();
+		
+		if(entries.isEmpty() || !device.isRunning())
+			return;
+		
+		listener.messageReported("Trying " + entries.size() + " failed songs again on " + device + "\n");
+		Thread.sleep(model.getRetryPolicy().getFinalDelay());
+		
+		for(PlaylistEntry entry : entries){
+			if(!device.isRunning() || !processed(model.copyFile(entry, device, true), device, listener))
+				return;
+		}
+	}
+	
+	/**
+	 * Tells the listener about a song and stops its target immediately if it is full or gone, the others keep going.
+	 * @param result What happened to the song
+	 * @param device The target the song was copied to
+	 * @param listener This will be told about the song
+	 * @return False if the target has been stopped
+	 */
+	private boolean processed(CopyResult result, TargetDevice device, CopyListener listener){
+		listener.songProcessed(result);
+		
+		if(result.isFatal()){
+			device.stop(result.getCause());
+			listener.messageReported("Stopped copying to " + device + ", " + Model.describeStop(device) + "\n");
+			return false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is implemented by the classes that want to follow the progress of the copy workers. The functions are called
+ * from the worker threads.
+ */
+public interface CopyListener{
+	/**
+	 * This is called after each song has been processed for a target, whether it was copied or not.
+	 * @param result What happened to the song, failed songs are also kept by the Model to be shown after copying
+	 */
+	public void songProcessed(CopyResult result);
+	
+	/**
+	 * This is called when there is something the user should be told about that isn't about a single song.
+	 * @param message The message that should be shown to the user
+	 */
+	public void messageReported(String message);
+}
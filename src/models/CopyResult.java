@@ -0,0 +1,226 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is what happened to a single song in one of the targets. The copy workers return it for every song they
+ * process, so the targets can be stopped as soon as a song fails for a reason that all other songs would fail for too.
+ */
+public class CopyResult{
+	/**
+	 * What was done with the song.
+	 */
+	public enum Outcome{
+		//DEFERRED songs kept failing and will be tried again once the other songs are finished
+		COPIED, SKIPPED, DUPLICATE, OUTSIDE, FAILED, DEFERRED, CANCELLED
+	}
+	
+	/**
+	 * Why a song couldn't be copied. The fatal causes stop copying to the target, the others only fail the song. The
+	 * transient causes may go away by themselves so the song is tried again.
+	 */
+	public enum Cause{
+		NONE("none", false, false),
+		NOT_FOUND("not-found", false, false),
+		ACCESS_DENIED("access-denied", false, false),
+		FILE_SYSTEM("file-system", false, false),
+		UNSUPPORTED("unsupported", false, false),
+		IO("io", false, true),
+		//The copy was read back and it was different, cheap memory cards do this now and then
+		VERIFY("verify-failed", false, true),
+		//Another song of the play-lists is copied to the same file in the target
+		SAME_DESTINATION("same-destination", false, false),
+		NO_SPACE("no-space", true, false),
+		TARGET_GONE("target-gone", true, false);
+		
+		private final String name;
+		private final boolean fatal;
+		private final boolean temporary;
+		
+		private Cause(String name, boolean fatal, boolean temporary){
+			this.name = name;
+			this.fatal = fatal;
+			this.temporary = temporary;
+		}
+		
+		/**
+		 * @return The name of the cause as it is shown in the errors and the metrics
+		 */
+		public String getName(){
+			return name;
+		}
+		
+		/**
+		 * @return Whether every other song in the target would fail for the same reason
+		 */
+		public boolean isFatal(){
+			return fatal;
+		}
+		
+		/**
+		 * @return Whether the song may be copied if it is tried again, like after a read error on a USB device
+		 */
+		public boolean isTransient(){
+			return temporary;
+		}
+		
+		/**
+		 * @param cause The exception a song couldn't be copied with
+		 * @return The cause that describes the exception, this can't tell if a target is full or gone
+		 */
+		public static Cause of(Throwable cause){
+			if(cause instanceof ChecksumMismatchException)
+				return VERIFY;
+			else if(cause instanceof FileNotFoundException || cause instanceof NoSuchFileException)
+				return NOT_FOUND;
+			else if(cause instanceof AccessDeniedException)
+				return ACCESS_DENIED;
+			else if(cause instanceof FileSystemException)
+				return FILE_SYSTEM;
+			else if(cause instanceof UnsupportedOperationException)
+				return UNSUPPORTED;
+			else
+				return IO;
+		}
+	}
+	
+	private final PlaylistEntry entry;
+	private final Outcome outcome;
+	private final Cause cause;
+	private final File destination;
+	private final long bytes;
+	private final String detail;
+	
+	/**
+	 * @param entry The song
+	 * @param outcome What was done with the song
+	 * @param cause Why the song failed or Cause.NONE
+	 * @param destination The copy of the song or null if it isn't copied to the target
+	 * @param bytes The number of bytes copied
+	 * @param detail More information about the result, like the message of an error, or null
+	 */
+	public CopyResult(PlaylistEntry entry, Outcome outcome, Cause cause, File destination, long bytes,
+			String detail){
+		this.entry = entry;
+		this.outcome = outcome;
+		this.cause = cause;
+		this.destination = destination;
+		this.bytes = bytes;
+		this.detail = detail;
+	}
+	
+	/**
+	 * @param entry The song
+	 * @param outcome What was done with the song, it wasn't copied and didn't fail
+	 * @param destination The copy of the song that is already in the target or null if there isn't one
+	 * @return The result
+	 */
+	public static CopyResult of(PlaylistEntry entry, Outcome outcome, File destination){
+		return new CopyResult(entry, outcome, Cause.NONE, destination, 0, null);
+	}
+	
+	/**
+	 * @param entry The song
+	 * @param cause Why the song couldn't be copied
+	 * @param destination The file the song was being copied to
+	 * @param error The exception the song couldn't be copied with or null
+	 * @return The result of a song that failed
+	 */
+	public static CopyResult failed(PlaylistEntry entry, Cause cause, File destination, Throwable error){
+		return new CopyResult(entry, Outcome.FAILED, cause, destination, 0, error == null ? null : error.getMessage());
+	}
+	
+	/**
+	 * @return The song
+	 */
+	public PlaylistEntry getEntry(){
+		return entry;
+	}
+	
+	/**
+	 * @return What was done with the song
+	 */
+	public Outcome getOutcome(){
+		return outcome;
+	}
+	
+	/**
+	 * @return Why the song failed or Cause.NONE
+	 */
+	public Cause getCause(){
+		return cause;
+	}
+	
+	/**
+	 * @return The song in the source folder
+	 */
+	public File getSource(){
+		return entry.getSong();
+	}
+	
+	/**
+	 * @return The copy of the song or null if it isn't copied to the target
+	 */
+	public File getDestination(){
+		return destination;
+	}
+	
+	/**
+	 * @return The number of bytes copied
+	 */
+	public long getBytes(){
+		return bytes;
+	}
+	
+	/**
+	 * @return More information about the result, like the message of an error, or null
+	 */
+	public String getDetail(){
+		return detail;
+	}
+	
+	/**
+	 * @return Whether the song couldn't be copied
+	 */
+	public boolean isFailed(){
+		return outcome == Outcome.FAILED;
+	}
+	
+	/**
+	 * @return Whether copying to the target should stop because of this song
+	 */
+	public boolean isFatal(){
+		return outcome == Outcome.FAILED && cause.isFatal();
+	}
+}
@@ -0,0 +1,51 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is implemented by the classes that copy the data of a single song. The Model picks the folder the song goes to
+ * and makes sure it exists, the strategy only moves the bytes. Strategies are shared by all copy workers.
+ */
+public interface CopyStrategy{
+	/**
+	 * Copies the song and keeps its last modified date.
+	 * @param source The song that will be copied
+	 * @param destination The file the song will be copied to, it is overwritten if it exists
+	 * @return The number of bytes that were copied
+	 * @throws IOException If the song couldn't be copied
+	 */
+	public long copy(File source, File destination) throws IOException;
+	
+	/**
+	 * @return The name that is used to select this strategy
+	 */
+	public String getName();
+}
@@ -0,0 +1,243 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the Deduplicator class that finds songs that are in the play-lists more than once. Songs are the same if
+ * their paths lead to the same file after links and . or .. folders are resolved. Optionally songs in different files
+ * are the same if they have the same contents, the contents are only hashed when another song has the same size.
+ * The songs are kept in a CompactPlaylist, only the hashes of their resolved paths and their indexes are kept here.
+ * 
+ * The paths are checked when the songs are read from the play-list, the contents are compared later by the workers so
+ * hashing a song doesn't hold up the songs after it. Each song points to the last song before it with the same size,
+ * the songs of a size are compared in play-list order by following these links back to the last song that has been
+ * compared. So each song is hashed once and the first of the songs with the same contents is always the one that
+ * comes first in the play-list, no matter which worker compares them first. The result is kept as the original of
+ * the song in the CompactPlaylist.
+ */
+public class Deduplicator{
+	//The number of locks the sizes are spread over, so songs of different sizes are hashed at the same time
+	private static final int LOCKS = 64;
+	
+	private final CompactPlaylist songs;
+	private final boolean hashing;
+	//The first song seen for each resolved path, by the hash of the path. It is made when the first song is checked
+	//so it can fit a play-list that has been read completely.
+	private LongIntMap paths = null;
+	//The first song of each resolved path whose hash is the hash of another path, this is very unlikely so a map of
+	//the paths is enough
+	private final Map<Path, Integer> collided = new HashMap<>();
+	//The last song of each size and the first song of each size and hash of the contents, these are only made when
+	//contents are compared
+	private LongIntMap sizes = null;
+	private LongIntMap contents = null;
+	private final Object[] locks = new Object[LOCKS];
+	
+	/**
+	 * @param songs The songs of the play-lists
+	 * @param hashing Whether songs in different files with the same contents are duplicates too
+	 */
+	public Deduplicator(CompactPlaylist songs, boolean hashing){
+		this.songs = songs;
+		this.hashing = hashing;
+		
+		for(int i = 0; i < LOCKS; i++){
+			locks[i] = new Object();
+		}
+	}
+	
+	/**
+	 * Checks if a song has been seen before with the same path. Songs are checked in play-list order. The songs that
+	 * are seen for the first time are linked to the last song of their size so sameContents can compare them later.
+	 * @param index The index of a song in the play-list
+	 * @return The index of the first song that is the same as this one or CompactPlaylist.NONE if this is the first
+	 * time it is seen
+	 */
+	public int original(int index){
+		File song = songs.getSong(index);
+		//The path is resolved before taking the lock since it reads the file system
+		Path path = resolve(song);
+		int original;
+		
+		synchronized(this){
+			if(paths == null)
+				paths = new LongIntMap(Math.max(1024, songs.size()));
+			
+			original = paths.putIfAbsent(LongIntMap.hash(path.toString()), index);
+		}
+		
+		if(original != LongIntMap.MISSING && !resolve(songs.getSong(original)).equals(path)){
+			//Different paths with the same hash are very unlikely, these paths are told apart by the paths themselves
+			synchronized(this){
+				Integer first = collided.get(path);
+				original = first == null ? LongIntMap.MISSING : first;
+				
+				if(first == null)
+					collided.put(path, index);
+			}
+		}
+		
+		if(original != LongIntMap.MISSING){
+			//The first song may have the same contents as a song before it, then that song is the first of both. This
+			//is the only time the contents are compared here and the first song has usually been compared by then.
+			int first = sameContents(original);
+			
+			return first == CompactPlaylist.NONE ? original : first;
+		}
+		
+		if(hashing && song.isFile()){
+			//The size is usually known from planning the space
+			long size = songs.getSize(index);
+			
+			if(size == CompactPlaylist.UNKNOWN){
+				size = song.length();
+				songs.setSize(index, size);
+			}
+			
+			synchronized(this){
+				if(sizes == null)
+					sizes = new LongIntMap(1024);
+				
+				int earlier = sizes.get(size);
+				sizes.put(size, index);
+				songs.setSameSize(index, earlier == LongIntMap.MISSING ? CompactPlaylist.NONE : earlier);
+			}
+			
+			songs.addStatus(index, CompactPlaylist.SIZED);
+		}
+		
+		return CompactPlaylist.NONE;
+	}
+	
+	/**
+	 * Checks if a song has the same contents as a song before it in the play-list. This is called by the workers,
+	 * the song has to be checked by original first. The songs of the same size before it that haven't been compared
+	 * yet are compared too.
+	 * @param index The index of a song in the play-list
+	 * @return The index of the first song with the same contents or CompactPlaylist.NONE if there is none
+	 */
+	public int sameContents(int index){
+		if(!hashing)
+			return CompactPlaylist.NONE;
+		
+		int status = songs.getStatus(index);
+		
+		if((status & CompactPlaylist.COMPARED) != 0)
+			return songs.getOriginal(index);
+		
+		//The first song of its size is only hashed when a song after it has the same size
+		if((status & CompactPlaylist.SIZED) == 0 || songs.getSameSize(index) == CompactPlaylist.NONE)
+			return CompactPlaylist.NONE;
+		
+		long size = songs.getSize(index);
+		
+		synchronized(locks[Long.hashCode(size) & (LOCKS - 1)]){
+			//The songs of a size are compared in play-list order, so the ones left are the last ones up to this song
+			int[] compared = new int[16];
+			int count = 0;
+			
+			for(int i = index; i != CompactPlaylist.NONE; i = songs.getSameSize(i)){
+				if((songs.getStatus(i) & CompactPlaylist.COMPARED) != 0)
+					break;
+				
+				if(count == compared.length)
+					compared = Arrays.copyOf(compared, count * 2);
+				
+				compared[count++] = i;
+			}
+			
+			for(int i = count - 1; i >= 0; i--){
+				if(!compare(compared[i], size))
+					return CompactPlaylist.NONE;
+			}
+		}
+		
+		return songs.getOriginal(index);
+	}
+	
+	/**
+	 * Hashes a song and keeps the first song with the same contents as its original. The songs of a size are
+	 * compared in play-list order.
+	 * @param index The index of a song in the play-list
+	 * @param size The size of the song
+	 * @return Whether the song has been compared, it isn't if the worker has been interrupted
+	 */
+	private boolean compare(int index, long size){
+		String hash;
+		
+		try{
+			hash = SyncManifest.hash(songs.getSong(index));
+		}catch(IOException e){
+			//The song is copied, the copying stops when it sees the interrupt
+			if(Thread.currentThread().isInterrupted())
+				return false;
+			
+			hash = null;
+		}
+		
+		if(hash != null){
+			int first;
+			
+			//Different contents with the same 64 bit hash of their checksums are as unlikely as a collision of the
+			//checksums themselves
+			synchronized(this){
+				if(contents == null)
+					contents = new LongIntMap(1024);
+				
+				first = contents.putIfAbsent(LongIntMap.hash(size + " " + hash), index);
+			}
+			
+			if(first != LongIntMap.MISSING)
+				songs.setOriginal(index, first);
+		}
+		
+		songs.addStatus(index, CompactPlaylist.COMPARED);
+		
+		return true;
+	}
+	
+	/**
+	 * @param song A song file
+	 * @return The real path of the song or its normalized absolute path if it doesn't exist
+	 */
+	private static Path resolve(File song){
+		Path path = song.getAbsoluteFile().toPath();
+		
+		try{
+			return path.toRealPath();
+		}catch(IOException e){
+			return path.normalize();
+		}
+	}
+}
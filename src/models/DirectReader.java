@@ -0,0 +1,111 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This reads files with O_DIRECT, around the cache of the operating system, so a copy that is checked is read back from
+ * the device and not from the memory it was just written from. Direct reads are not part of the standard API, the
+ * option is looked up once and files are read normally where it isn't there or the file system doesn't support it.
+ */
+class DirectReader{
+	//The size of each read, it is rounded down to the block size of the device
+	private static final int CHUNK = 1024 * 1024;
+	//The option that opens a file for direct reads or null if this Java doesn't have it
+	private static final OpenOption DIRECT = findOption();
+	
+	private DirectReader(){
+	}
+	
+	/**
+	 * Reads a file from the device and gives its contents to the checksum.
+	 * @param file The file
+	 * @param checksum The checksum that is updated with the contents
+	 * @return False if the file can't be read directly, the checksum hasn't seen any data then
+	 * @throws IOException If the file was opened but couldn't be read
+	 */
+	static boolean read(File file, StreamChecksum checksum) throws IOException{
+		if(DIRECT == null)
+			return false;
+		
+		FileChannel in;
+		int block;
+		
+		try{
+			block = (int)Files.getFileStore(file.toPath()).getBlockSize();
+			in = FileChannel.open(file.toPath(), StandardOpenOption.READ, DIRECT);
+		}catch(IOException | UnsupportedOperationException e){
+			//The file system doesn't support direct reads, like tmpfs
+			return false;
+		}
+		
+		//Direct reads need a buffer that starts at a block and holds whole blocks
+		int size = Math.max(block, CHUNK / block * block);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size + block).alignedSlice(block);
+		buffer.limit(size);
+		
+		try{
+			while(in.read(buffer) > 0){
+				buffer.flip();
+				checksum.update(buffer);
+				
+				//Only the last read is shorter than the buffer, the next one would start inside a block
+				if(buffer.limit() < size)
+					break;
+				
+				buffer.clear();
+				buffer.limit(size);
+			}
+		}finally{
+			in.close();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return The option that opens a file for direct reads or null if this Java doesn't have it
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static OpenOption findOption(){
+		try{
+			Class options = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+			
+			return (OpenOption)Enum.valueOf(options, "DIRECT");
+		}catch(ClassNotFoundException | IllegalArgumentException | ClassCastException e){
+			return null;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the FolderCache class that remembers the folders that already exist in a target folder. Every song of an
+ * album is copied to the same folder, without this each of them would check the folder and try to create it again.
+ * On memory cards and network drives these checks can take longer than copying the song. The cache is shared by the
+ * copy workers of a target.
+ */
+public class FolderCache{
+	//The number of folders remembered, it is emptied when it gets larger than this
+	private static final int CACHE_SIZE = 32768;
+	
+	private final ConcurrentHashMap<String, Boolean> folders = new ConcurrentHashMap<>();
+	
+	/**
+	 * Makes sure a folder exists, creating it and the folders above it if needed. Folders that have been made sure of
+	 * before are not checked again.
+	 * @param folder The folder a song will be copied to
+	 * @throws IOException If the folder doesn't exist and can't be created
+	 */
+	public void ensure(File folder) throws IOException{
+		String path = folder.getPath();
+		
+		if(folders.containsKey(path))
+			return;
+		
+		if(!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()){
+			throw new IOException("Unable to create folder " + folder);
+		}
+		
+		if(folders.size() >= CACHE_SIZE)
+			folders.clear();
+		
+		folders.put(path, Boolean.TRUE);
+	}
+	
+	/**
+	 * Creates all of the given folders before any song is copied, so the copy workers find them in the cache. The
+	 * folders are created in order of their paths so the folders of an artist are created one after the other.
+	 * @param batch The folders the songs will be copied to, there can be the same folder more than once
+	 * @return The number of folders that couldn't be created, the workers will try them again and report the songs
+	 */
+	public int prepare(Collection<File> batch){
+		TreeSet<File> sorted = new TreeSet<>(batch);
+		int failed = 0;
+		
+		for(File folder : sorted){
+			try{
+				ensure(folder);
+			}catch(IOException e){
+				failed++;
+			}
+		}
+		
+		return failed;
+	}
+}
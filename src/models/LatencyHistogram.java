@@ -0,0 +1,114 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the LatencyHistogram class that counts how long an operation takes. Each bucket holds the times between two
+ * powers of two nanoseconds, so recording is a few atomic additions and the percentiles are accurate to a factor of
+ * two, which is enough to tell a cached stat from a slow device. It is shared by the copy workers.
+ */
+public class LatencyHistogram{
+	private static final int BUCKETS = 64;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * @param nanos How long the operation took in nanoseconds
+	 */
+	public void record(long nanos){
+		long time = Math.max(0, nanos);
+		buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(time | 1));
+		count.incrementAndGet();
+		total.addAndGet(time);
+		
+		long current;
+		
+		while(time > (current = max.get()) && !max.compareAndSet(current, time)){
+			//Another thread changed the maximum, check again
+		}
+	}
+	
+	/**
+	 * @return The number of times the operation was recorded
+	 */
+	public long getCount(){
+		return count.get();
+	}
+	
+	/**
+	 * @return The total time spent in the operation in nanoseconds
+	 */
+	public long getTotal(){
+		return total.get();
+	}
+	
+	/**
+	 * @return The longest time the operation took in nanoseconds
+	 */
+	public long getMax(){
+		return max.get();
+	}
+	
+	/**
+	 * @param percent A percentile between 0 and 100
+	 * @return The upper bound of the bucket the percentile falls in, in nanoseconds
+	 */
+	public long getPercentile(double percent){
+		long recorded = count.get();
+		
+		if(recorded == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(recorded * percent / 100.0);
+		long seen = 0;
+		
+		for(int i = 0; i < BUCKETS; i++){
+			seen += buckets.get(i);
+			
+			if(seen >= rank)
+				return Math.min(max.get(), i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1);
+		}
+		
+		return max.get();
+	}
+	
+	/**
+	 * @return The counts and the percentiles as a JSON object, times are in microseconds
+	 */
+	public String toJson(){
+		return "{\"count\":" + getCount() + ",\"totalMs\":" + getTotal() / 1000000 + ",\"p50Us\":"
+				+ getPercentile(50) / 1000 + ",\"p90Us\":" + getPercentile(90) / 1000 + ",\"p99Us\":"
+				+ getPercentile(99) / 1000 + ",\"maxUs\":" + getMax() / 1000 + "}";
+	}
+}
@@ -0,0 +1,249 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the LocalityScheduler class that changes the order the songs are copied in to the order they most likely
+ * have on the source disk. A shuffled play-list makes the head of a hard disk jump across the whole library for every
+ * song, copying in disk order lets it read the songs one after the other. Java doesn't show where the data of a file
+ * is on the disk, the inode number is used instead since ext4 and XFS keep the data of a file close to its inode and
+ * the inodes of a folder close together. On file systems without inodes the songs are ordered by their paths. The
+ * inodes are read by a few threads at the same time since most of the time goes to waiting for the disk.
+ * 
+ * Only the copying order changes, the play-lists written to the targets and the reports keep the play-list order.
+ */
+public class LocalityScheduler{
+	//Order the songs by their inodes
+	public static final String INODE = "inode";
+	//Keep the songs of each album folder together, the folders are ordered by their inodes and so are their songs
+	public static final String FOLDER = "folder";
+	
+	//Songs that can't be found go last, they will fail without reading anything
+	private static final long MISSING = Long.MAX_VALUE;
+	
+	private final boolean folders;
+	private final int threads;
+	
+	/**
+	 * @param order The name of the order, "inode" or "folder"
+	 * @throws IllegalArgumentException If there is no order with this name
+	 */
+	public LocalityScheduler(String order){
+		this(order, 1);
+	}
+	
+	/**
+	 * @param order The name of the order, "inode" or "folder"
+	 * @param threads The number of threads that read the inodes
+	 * @throws IllegalArgumentException If there is no order with this name
+	 */
+	public LocalityScheduler(String order, int threads){
+		this.threads = Math.max(1, threads);
+		
+		if(INODE.equals(order))
+			folders = false;
+		else if(FOLDER.equals(order))
+			folders = true;
+		else
+			throw new IllegalArgumentException("Unknown order: " + order);
+	}
+	
+	/**
+	 * @param songs The songs in play-list order
+	 * @return The indexes of the songs in the order they should be copied, songs with the same place keep their
+	 * play-list order
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for the threads
+	 */
+	public int[] order(final CompactPlaylist songs) throws InterruptedException{
+		int count = songs.size();
+		final long[] inodes = new long[count];
+		final long[] folderInodes = new long[songs.getFolderCount()];
+		final int[] ranks = rank(songs);
+		int[] order = new int[count];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		
+		try{
+			//The inode of each folder is only read once
+			if(folders){
+				SpacePlanner.run(pool, folderInodes.length, new SpacePlanner.Batch() {
+					@Override
+					public void check(int index) {
+						folderInodes[index] = inode(songs.getFolderFile(index));
+					}
+				});
+			}
+			
+			SpacePlanner.run(pool, count, new SpacePlanner.Batch() {
+				@Override
+				public void check(int index) {
+					inodes[index] = inode(songs.getSong(index));
+				}
+			});
+		}finally{
+			pool.shutdownNow();
+		}
+		
+		for(int i = 0; i < count; i++){
+			order[i] = i;
+		}
+		
+		//The sort is stable so songs with the same place keep their play-list order
+		sort(order, new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				int folderA = songs.getFolder(a);
+				int folderB = songs.getFolder(b);
+				int rankA = folderA == CompactPlaylist.NONE ? -1 : ranks[folderA];
+				int rankB = folderB == CompactPlaylist.NONE ? -1 : ranks[folderB];
+				int compared = 0;
+				
+				if(folders){
+					compared = Long.compare(folderA == CompactPlaylist.NONE ? 0 : folderInodes[folderA],
+							folderB == CompactPlaylist.NONE ? 0 : folderInodes[folderB]);
+					
+					if(compared == 0)
+						compared = Integer.compare(rankA, rankB);
+				}
+				
+				if(compared == 0)
+					compared = Long.compare(inodes[a], inodes[b]);
+				
+				//Without inodes the songs are ordered by their folders and names
+				if(compared == 0)
+					compared = Integer.compare(rankA, rankB);
+				
+				if(compared == 0 && folderA == folderB)
+					compared = songs.getName(a).compareTo(songs.getName(b));
+				
+				return compared;
+			}
+		});
+		
+		return order;
+	}
+	
+	/**
+	 * Compares two songs by their indexes.
+	 */
+	private interface IndexComparator{
+		/**
+		 * @param a The index of a song
+		 * @param b The index of another song
+		 * @return Less than 0 if a goes first, more than 0 if b goes first or 0 if they have the same place
+		 */
+		public int compare(int a, int b);
+	}
+	
+	/**
+	 * Sorts indexes with a merge sort that keeps the order of equal songs, without boxing each index.
+	 * @param order The indexes that are sorted
+	 * @param comparator Compares the songs of two indexes
+	 */
+	private static void sort(int[] order, IndexComparator comparator){
+		int[] from = order;
+		int[] to = new int[order.length];
+		
+		for(int width = 1; width < order.length; width *= 2){
+			for(int start = 0; start < order.length; start += width * 2){
+				int middle = Math.min(start + width, order.length);
+				int end = Math.min(start + width * 2, order.length);
+				int left = start;
+				int right = middle;
+				
+				for(int i = start; i < end; i++){
+					if(left < middle && (right >= end || comparator.compare(from[left], from[right]) <= 0))
+						to[i] = from[left++];
+					else
+						to[i] = from[right++];
+				}
+			}
+			
+			int[] swapped = from;
+			from = to;
+			to = swapped;
+		}
+		
+		if(from != order)
+			System.arraycopy(from, 0, order, 0, order.length);
+	}
+	
+	/**
+	 * @param songs The songs of the play-list
+	 * @return The place of each folder when the folders are ordered by their paths
+	 */
+	private static int[] rank(CompactPlaylist songs){
+		int count = songs.getFolderCount();
+		final String[] paths = new String[count];
+		Integer[] sorted = new Integer[count];
+		
+		for(int i = 0; i < count; i++){
+			paths[i] = songs.getFolderFile(i).getPath();
+			sorted[i] = i;
+		}
+		
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return paths[a].compareTo(paths[b]);
+			}
+		});
+		
+		int[] ranks = new int[count];
+		
+		for(int i = 0; i < count; i++){
+			ranks[sorted[i]] = i;
+		}
+		
+		return ranks;
+	}
+	
+	/**
+	 * @param file A file or folder
+	 * @return The inode number of the file, 0 if the file system doesn't have inodes or MISSING if it doesn't exist
+	 */
+	static long inode(File file){
+		try{
+			Object inode = Files.getAttribute(file.toPath(), "unix:ino");
+			
+			return inode instanceof Long ? (Long)inode : 0;
+		}catch(UnsupportedOperationException | IllegalArgumentException e){
+			//This isn't a Unix file system, the paths will decide the order
+			return file.exists() ? 0 : MISSING;
+		}catch(IOException e){
+			return MISSING;
+		}
+	}
+}
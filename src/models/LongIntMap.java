@@ -0,0 +1,211 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the LongIntMap class that maps 64 bit keys to int values without an object for each key. It is used to
+ * find songs by the hash of their paths in play-lists with millions of songs. The keys are kept in arrays with open
+ * addressing, so the map only takes 12 bytes for each slot. The keys are split into segments that grow on their own,
+ * so growing never needs twice the memory of the whole map at once.
+ */
+class LongIntMap{
+	//The value returned for keys that aren't in the map
+	public static final int MISSING = -1;
+	
+	//Key 0 marks the empty slots, so a real key of 0 is kept as this
+	private static final long ZERO = 0x9E3779B97F4A7C15L;
+	private static final int SEGMENTS = 64;
+	
+	private final long[][] keys = new long[SEGMENTS][];
+	private final int[][] values = new int[SEGMENTS][];
+	private final int[] sizes = new int[SEGMENTS];
+	
+	/**
+	 * @param expected The number of keys expected, the map grows past it when needed
+	 */
+	public LongIntMap(int expected){
+		int capacity = 16;
+		
+		while(capacity < expected * 2L / SEGMENTS && capacity < (1 << 30)){
+			capacity <<= 1;
+		}
+		
+		for(int i = 0; i < SEGMENTS; i++){
+			keys[i] = new long[capacity];
+			values[i] = new int[capacity];
+		}
+	}
+	
+	/**
+	 * @param key A key
+	 * @return The value of the key or MISSING if it isn't in the map
+	 */
+	public int get(long key){
+		key = key == 0 ? ZERO : key;
+		long mixed = mix(key);
+		int segment = segment(mixed);
+		long[] slots = keys[segment];
+		int mask = slots.length - 1;
+		
+		for(int slot = (int)mixed & mask; slots[slot] != 0; slot = (slot + 1) & mask){
+			if(slots[slot] == key)
+				return values[segment][slot];
+		}
+		
+		return MISSING;
+	}
+	
+	/**
+	 * Adds a key if it isn't in the map yet.
+	 * @param key A key
+	 * @param value The value of the key, it can't be MISSING
+	 * @return The value the key already had or MISSING if it has been added
+	 */
+	public int putIfAbsent(long key, int value){
+		return put(key, value, false);
+	}
+	
+	/**
+	 * Adds a key or changes its value.
+	 * @param key A key
+	 * @param value The value of the key, it can't be MISSING
+	 */
+	public void put(long key, int value){
+		put(key, value, true);
+	}
+	
+	/**
+	 * @return The number of keys in the map
+	 */
+	public int size(){
+		int size = 0;
+		
+		for(int segment : sizes){
+			size += segment;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * @param key A key
+	 * @param value The value of the key
+	 * @param replace Whether the value of a key that is already in the map is changed
+	 * @return The value the key had or MISSING if it has been added
+	 */
+	private int put(long key, int value, boolean replace){
+		key = key == 0 ? ZERO : key;
+		long mixed = mix(key);
+		int segment = segment(mixed);
+		long[] slots = keys[segment];
+		int mask = slots.length - 1;
+		int slot = (int)mixed & mask;
+		
+		for(; slots[slot] != 0; slot = (slot + 1) & mask){
+			if(slots[slot] == key){
+				int old = values[segment][slot];
+				
+				if(replace)
+					values[segment][slot] = value;
+				
+				return old;
+			}
+		}
+		
+		slots[slot] = key;
+		values[segment][slot] = value;
+		
+		//Keep at least a quarter of the slots empty so the searches stay short
+		if(++sizes[segment] * 4L > slots.length * 3L)
+			grow(segment);
+		
+		return MISSING;
+	}
+	
+	/**
+	 * Doubles the number of slots of a segment and adds its keys again.
+	 * @param segment The segment
+	 */
+	private void grow(int segment){
+		long[] oldKeys = keys[segment];
+		int[] oldValues = values[segment];
+		long[] newKeys = new long[oldKeys.length * 2];
+		int[] newValues = new int[oldKeys.length * 2];
+		int mask = newKeys.length - 1;
+		
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] == 0)
+				continue;
+			
+			int slot = (int)mix(oldKeys[i]) & mask;
+			
+			while(newKeys[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			
+			newKeys[slot] = oldKeys[i];
+			newValues[slot] = oldValues[i];
+		}
+		
+		keys[segment] = newKeys;
+		values[segment] = newValues;
+	}
+	
+	/**
+	 * @param key A key that isn't 0
+	 * @return The bits of the key mixed, the low bits pick the slot and the high bits the segment
+	 */
+	private static long mix(long key){
+		long mixed = key * 0xBF58476D1CE4E5B9L;
+		
+		return mixed ^ (mixed >>> 31);
+	}
+	
+	/**
+	 * @param mixed The mixed bits of a key
+	 * @return The segment of the key
+	 */
+	private static int segment(long mixed){
+		return (int)(mixed >>> 58);
+	}
+	
+	/**
+	 * @param text A string
+	 * @return A 64 bit FNV-1a hash of the characters of the string
+	 */
+	public static long hash(String text){
+		long hash = 0xCBF29CE484222325L;
+		
+		for(int i = 0; i < text.length(); i++){
+			hash ^= text.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		
+		return hash;
+	}
+}
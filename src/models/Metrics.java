@@ -0,0 +1,243 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the Metrics class that keeps the measurements of a run. The time of each step of copying a song is kept in a
+ * histogram so a slow run shows if the time goes to looking at files and folders or to moving the data. Counters keep
+ * the number of songs, bytes and errors of each kind. It is shared by the copy workers.
+ */
+public class Metrics{
+	//Reading the sizes and dates of files, including the checks of earlier copies
+	public static final String STAT = "stat";
+	public static final String MKDIR = "mkdir";
+	public static final String COPY = "copy";
+	//Moving a complete copy to its real name
+	public static final String RENAME = "rename";
+	//Reading a copy back and comparing its checksum
+	public static final String VERIFY = "verify";
+	//Recording a song in the journal, the time spent forcing the journal to the device is also recorded as FSYNC
+	public static final String JOURNAL = "journal";
+	//Forcing written data to the device
+	public static final String FSYNC = "fsync";
+	public static final String LINK = "link";
+	public static final String PLAN = "plan";
+	public static final String PREPARE = "prepare";
+	//Ordering the songs by where they are on the source disk
+	public static final String SCHEDULE = "schedule";
+	//Waiting for the files per second limit of a target, the wait for the bytes per second limit is part of copying
+	public static final String THROTTLE = "throttle";
+	
+	public static final String COPIED = "copied";
+	public static final String SKIPPED = "skipped";
+	public static final String BYTES = "bytes";
+	public static final String RETRIES = "retries";
+	//Errors are counted under this prefix and the kind of the error
+	public static final String ERRORS = "errors.";
+	
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	//The value of System.nanoTime when the run started or 0 if it hasn't started
+	private volatile long started = 0;
+	//The value of System.nanoTime when the run stopped or 0 if it is still running
+	private volatile long stopped = 0;
+	
+	/**
+	 * Forgets all measurements, this is called when new play-lists are selected.
+	 */
+	public void reset(){
+		histograms.clear();
+		counters.clear();
+		started = 0;
+		stopped = 0;
+	}
+	
+	/**
+	 * Starts measuring the time of the run if it hasn't been started yet. Planning and copying both call this so the
+	 * time starts with whichever comes first.
+	 */
+	public synchronized void start(){
+		if(started == 0)
+			started = System.nanoTime();
+		
+		stopped = 0;
+	}
+	
+	/**
+	 * Stops measuring the time of the run, the rates stay what they were when the run stopped.
+	 */
+	public void stop(){
+		if(started != 0)
+			stopped = System.nanoTime();
+	}
+	
+	/**
+	 * @param name The name of an operation
+	 * @return The histogram of the operation, it is created the first time
+	 */
+	public LatencyHistogram histogram(String name){
+		LatencyHistogram histogram = histograms.get(name);
+		
+		if(histogram == null){
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+			
+			if(existing != null)
+				histogram = existing;
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Records an operation that started at the given time and ended now.
+	 * @param name The name of the operation
+	 * @param start The value of System.nanoTime when the operation started
+	 * @return The current time, so the next operation can start from here
+	 */
+	public long record(String name, long start){
+		long now = System.nanoTime();
+		histogram(name).record(now - start);
+		
+		return now;
+	}
+	
+	/**
+	 * @param name The name of a counter
+	 * @param amount The amount added to the counter
+	 */
+	public void count(String name, long amount){
+		AtomicLong counter = counters.get(name);
+		
+		if(counter == null){
+			counter = new AtomicLong();
+			AtomicLong existing = counters.putIfAbsent(name, counter);
+			
+			if(existing != null)
+				counter = existing;
+		}
+		
+		counter.addAndGet(amount);
+	}
+	
+	/**
+	 * @param name The name of a counter
+	 * @return The value of the counter or 0 if nothing has been counted
+	 */
+	public long getCount(String name){
+		AtomicLong counter = counters.get(name);
+		
+		return counter == null ? 0 : counter.get();
+	}
+	
+	/**
+	 * @return The time since the run started in nanoseconds or 0 if it hasn't started
+	 */
+	public long getElapsed(){
+		long start = started;
+		long stop = stopped;
+		
+		if(start == 0)
+			return 0;
+		
+		return (stop == 0 ? System.nanoTime() : stop) - start;
+	}
+	
+	/**
+	 * @return The counters and histograms as a JSON object, sorted by their names
+	 */
+	public String toJson(){
+		StringBuilder json = new StringBuilder("{\"elapsedMs\":").append(getElapsed() / 1000000);
+		double seconds = Math.max(getElapsed() / 1e9, 0.001);
+		//JSON numbers always have a dot, whatever the language of the user is
+		json.append(",\"megabytesPerSecond\":").append(String.format(Locale.ROOT, "%.2f",
+				getCount(BYTES) / (1024.0 * 1024.0) / seconds));
+		json.append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.2f", getCount(COPIED) / seconds));
+		json.append(",\"counters\":{");
+		String separator = "";
+		
+		for(Map.Entry<String, AtomicLong> counter : new TreeMap<>(counters).entrySet()){
+			json.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue().get());
+			separator = ",";
+		}
+		
+		json.append("},\"latency\":{");
+		separator = "";
+		
+		for(Map.Entry<String, LatencyHistogram> histogram : new TreeMap<>(histograms).entrySet()){
+			json.append(separator).append('"').append(histogram.getKey()).append("\":")
+					.append(histogram.getValue().toJson());
+			separator = ",";
+		}
+		
+		return json.append("}}").toString();
+	}
+	
+	/**
+	 * @param text Any string
+	 * @return The string as a JSON string with quotes
+	 */
+	public static String quote(String text){
+		StringBuilder quoted = new StringBuilder("\"");
+		
+		for(int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			
+			if(c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if(c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		
+		return quoted.append('"').toString();
+	}
+	
+	/**
+	 * @return A line for each operation with the total time spent in it and its median and slowest times
+	 */
+	public String describe(){
+		String text = "";
+		
+		for(Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()){
+			LatencyHistogram histogram = entry.getValue();
+			text = text.concat(String.format("%-8s %8d times, %8.1f s in total, median %.2f ms, slowest %.2f ms\n",
+					entry.getKey(), histogram.getCount(), histogram.getTotal() / 1e9,
+					histogram.getPercentile(50) / 1e6, histogram.getMax() / 1e6));
+		}
+		
+		return text;
+	}
+}
@@ -25,13 +25,27 @@
 
 package models;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.io.FileUtils;
 
 /**
@@ -40,42 +54,114 @@ import org.apache.commons.io.FileUtils;
  * This is the Model class that has the data and does the copying.
  */
 public class Model{
-	private File playlist = null;
+	//Songs are copied to a file with this suffix and renamed when they are complete
+	public static final String PARTIAL_SUFFIX = ".m3t-part";
+	//Reading the sizes of songs is mostly waiting for the devices so more threads than cores are used
+	private static final int PLANNING_THREADS = 16;
+	//The number of duplicate songs whose results are kept, the rest are only counted
+	private static final int DUPLICATE_LIMIT = 1000;
+	
+	private PlaylistBatch batch = null;
 	private File root = null;
-	private File target = null;
-	private BufferedReader buffReader;
+	private List<File> targets = new ArrayList<>();
+	private List<TargetDevice> devices = new ArrayList<>();
+	//The path mappers of the target folders, they are made again when the copying option or the folders change
+	private final ConcurrentHashMap<File, PathMapper> mappers = new ConcurrentHashMap<>();
+	//The songs read from the play-list so far, without an object for each song
+	private CompactPlaylist songs = new CompactPlaylist(null);
+	//Large play-lists keep most of their songs in files in this folder instead of the heap, null keeps them on the heap
+	private File spillFolder = new File(System.getProperty("java.io.tmpdir"));
+	//Whether the play-list has been read completely for planning, otherwise it is read while copying
+	private boolean planned = false;
+	private int plannedIndex = 0;
+	//The order the songs are copied in or null to copy them in play-list order
+	private String locality = null;
+	//The indexes of the songs in the order they are copied when it isn't the play-list order. The duplicates are
+	//found in play-list order before the order is changed.
+	private int[] order = null;
 	private int level;
-	private int currentIndex = 0;
-	//Songs that failed to be copied will be mentioned when execution stops. Their index will be kept here.
-	private String errors = "";
+	private int workers = 0;
+	private boolean virtualThreads = false;
+	private CopyStrategy strategy = createStrategy(System.getProperty("m3t.copy", NioCopyStrategy.NAME));
+	private final ParallelCopyStrategy large = new ParallelCopyStrategy(ParallelCopyStrategy.DEFAULT_THRESHOLD);
+	private RetryPolicy retry = new RetryPolicy(RetryPolicy.DEFAULT_ATTEMPTS);
+	//The limits of each target, in bytes and files per second, 0 means there is no limit
+	private volatile double maxBytesPerSecond = 0;
+	private volatile double maxFilesPerSecond = 0;
+	//The checksum copies are checked with or null if they aren't checked
+	private String verify = null;
+	private boolean directRead = false;
+	private final AtomicLong bytes = new AtomicLong();
+	private final Metrics metrics = new Metrics();
+	private boolean incremental = false;
+	private boolean hashing = false;
+	private Deduplicator deduplicator = new Deduplicator(songs, false);
+	private boolean sameContents = false;
+	private boolean linkDuplicates = false;
+	private boolean rewrite = false;
+	private String playlistBase = null;
+	//Songs that are in the play-list more than once, the detail of each result tells where its first song is
+	private ResultLog duplicates = new ResultLog(DUPLICATE_LIMIT);
 	
-	public int done = 0;
-	public int total = 0;
-	public boolean isRunning = false;
+	//These are updated by the copy workers so they have to be visible across threads. With more than one target
+	//they count each copy of a song separately.
+	public volatile int done = 0;
+	public volatile int skipped = 0;
+	public volatile int failed = 0;
+	//The number of songs that are the same as a song before them in the play-list, counted once for all targets
+	public volatile int duplicated = 0;
+	//The play-list is read while copying, this is the number of songs found so far until isTotalKnown returns true
+	public volatile int total = 0;
+	public volatile boolean isRunning = false;
 	
 	/**
-	 * This is called when a play-list is selected through a file browser to determine the songs to be copied.
-	 * @param file The play-list that contains the paths of the songs that will be copied
+	 * This is called when a play-list is selected through a file browser to determine the songs to be copied. The
+	 * play-list is not read here, songs are read one at a time while they are being copied.
+	 * @param file The play-list that contains the paths of the songs that will be copied, or a folder of play-lists
 	 * @throws UnsupportedEncodingException File IO related exceptions
 	 * @throws FileNotFoundException File IO related exceptions
 	 * @throws IOException File IO related exceptions
 	 */
 	public void m3uSelected(File file) throws UnsupportedEncodingException, FileNotFoundException, IOException{
-		playlist = file;
-		
-		buffReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-		
-		//Determine the total number of songs
-		int lines = 0;
-		while(buffReader.readLine() != null){
-			lines++;
-		}
+		playlistsSelected(PlaylistBatch.find(file));
+	}
+	
+	/**
+	 * Selects more than one play-list. They are copied together as if they were a single play-list, songs that are in
+	 * more than one of them are copied once.
+	 * @param files The play-lists that contain the paths of the songs that will be copied
+	 * @throws FileNotFoundException If one of the play-lists doesn't exist
+	 * @throws IOException File IO related exceptions
+	 */
+	public void playlistsSelected(List<File> files) throws FileNotFoundException, IOException{
+		PlaylistBatch selected = new PlaylistBatch(files);
 		
-		total = (lines-1) / 2;
+		if(batch != null)
+			batch.close();
 		
-		//Reset the input and skip the first line
-		buffReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-		buffReader.readLine();
+		batch = selected;
+		songs.close();
+		songs = new CompactPlaylist(spillFolder);
+		deduplicator = new Deduplicator(songs, sameContents);
+		planned = false;
+		plannedIndex = 0;
+		order = null;
+		total = 0;
+		done = 0;
+		skipped = 0;
+		failed = 0;
+		duplicated = 0;
+		duplicates = new ResultLog(DUPLICATE_LIMIT);
+		bytes.set(0);
+		metrics.reset();
+		devices = new ArrayList<>();
+	}
+	
+	/**
+	 * @return Whether the whole play-list has been read and total is the final number of songs
+	 */
+	public boolean isTotalKnown(){
+		return batch != null && batch.isFinished();
 	}
 	
 	/**
@@ -83,20 +169,30 @@ public class Model{
 	 */
 	public void rootSelected(File folder){
 		root = folder;
+		mappers.clear();
 	}
 	
 	/**
 	 * @param folder Songs will be copied to this folder
 	 */
 	public void targetSelected(File folder){
-		target = folder;
+		targets = new ArrayList<>();
+		targets.add(folder);
+	}
+	
+	/**
+	 * Selects more than one target folder. Each song is read from the playlist once and copied to all of them.
+	 * @param folders Songs will be copied to these folders
+	 */
+	public void targetsSelected(File[] folders){
+		targets = new ArrayList<>(Arrays.asList(folders));
 	}
 	
 	/**
 	 * @return If the user has selected the required settings for the "copy from bottom" option
 	 */
 	public boolean checkFolderSettings(){
-		if(playlist != null && target != null)
+		if(batch != null && !targets.isEmpty())
 			return true;
 		else
 			return false;
@@ -106,7 +202,7 @@ public class Model{
 	 * @return If the user has selected the required settings for the "copy contents" option
 	 */
 	public boolean checkFolderSettingsFull(){
-		if(playlist != null && root != null && target != null)
+		if(batch != null && root != null && !targets.isEmpty())
 			return true;
 		else
 			return false;
@@ -117,120 +213,1147 @@ public class Model{
 	 */
 	public void setLevel(int Level){
 		level = Level;
+		mappers.clear();
 	}
 	
 	/**
-	 * Gets the next songs path and copies it to the target folder. If there is no space available at the destination
-	 * the execution of the program is stopped.
-	 * @return Returns null on successful copy and an error message if there was a problem
+	 * @param count The number of songs that will be copied at the same time. If this is less than 1 the number will
+	 * be picked for the target device when copying starts
 	 */
-	public String copyFile(){
-		try {
-			//Skip two lines
-			String current = buffReader.readLine();
-			current = buffReader.readLine();
+	public void setWorkers(int count){
+		workers = count;
+	}
+	
+	/**
+	 * Selects how the data of the songs is copied. This can be changed while copying, songs that are being copied
+	 * will finish with the old strategy.
+	 * @param name The name of the strategy, "nio", "stream" or "pipeline"
+	 * @throws IllegalArgumentException If there is no strategy with this name
+	 */
+	public void setCopyStrategy(String name){
+		strategy = createStrategy(name);
+	}
+	
+	/**
+	 * @param attempts The number of times a song that fails for a reason that may go away is tried, 1 means failed
+	 * songs are never tried again
+	 */
+	public void setRetries(int attempts){
+		retry = new RetryPolicy(attempts);
+	}
+	
+	/**
+	 * Limits the rate of copying to each target separately. This can be called while copying, the workers use the new
+	 * limit from their next song or chunk.
+	 * @param megabytesPerSecond The number of megabytes copied to each target per second, 0 means there is no limit
+	 * @param filesPerSecond The number of songs copied to each target per second, 0 means there is no limit
+	 */
+	public void setRateLimit(double megabytesPerSecond, double filesPerSecond){
+		maxBytesPerSecond = Math.max(0, megabytesPerSecond) * 1024 * 1024;
+		maxFilesPerSecond = Math.max(0, filesPerSecond);
+		
+		for(TargetDevice device : devices){
+			device.setRateLimit(maxBytesPerSecond, maxFilesPerSecond);
+		}
+	}
+	
+	/**
+	 * @return The number of megabytes copied to each target per second or 0 if there is no limit
+	 */
+	public double getMaxMegabytesPerSecond(){
+		return maxBytesPerSecond / (1024 * 1024);
+	}
+	
+	/**
+	 * @return The number of songs copied to each target per second or 0 if there is no limit
+	 */
+	public double getMaxFilesPerSecond(){
+		return maxFilesPerSecond;
+	}
+	
+	/**
+	 * Selects if each copy is read back and compared to the song. The checksum of the song is computed from the reads
+	 * that copy it so the song is only read once. The checksums are kept in the manifest of the target.
+	 * @param algorithm The checksum, "crc32c" or "sha-256", or null to not check the copies
+	 * @param direct Whether the copies are read from the device instead of the cache of the operating system, where the
+	 * file system supports it
+	 * @throws IllegalArgumentException If there is no checksum with this name
+	 */
+	public void setVerify(String algorithm, boolean direct){
+		if(algorithm != null)
+			StreamChecksum.create(algorithm);
+		
+		verify = algorithm;
+		directRead = direct;
+	}
+	
+	/**
+	 * Selects the order the songs are copied in. Changing the order reads the whole play-list before copying, the
+	 * play-lists written to the targets and the reports keep the play-list order.
+	 * @param order "inode" or "folder" to copy in the order of the source disk, or null for the play-list order
+	 * @throws IllegalArgumentException If there is no order with this name
+	 */
+	public void setLocality(String order){
+		if(order != null)
+			new LocalityScheduler(order);
+		
+		locality = order;
+	}
+	
+	/**
+	 * Reads the whole play-list and orders the songs by where they are on the source disk, if another order than the
+	 * play-list order is selected. The duplicates are found and the songs are listed in the play-lists written to the
+	 * targets here, in play-list order, since the copying order would change both. This is called after startRun.
+	 * @return Null if the songs are ordered or a message that should be shown to the user
+	 */
+	public synchronized String schedule(){
+		if(locality == null)
+			return null;
+		
+		long time = System.nanoTime();
+		
+		try{
+			readPlaylist();
+		}catch(IOException e){
+			return "Unable to read the play-list: " + e.getMessage() + "\n";
+		}
+		
+		int first = plannedIndex;
+		try{
+			order = new LocalityScheduler(locality, PLANNING_THREADS).order(songs);
+		}catch(InterruptedException e){
+			//The songs are copied in play-list order, the copying stops when it sees the interrupt
+			Thread.currentThread().interrupt();
+			return "Ordering the songs was interrupted\n";
+		}
+		
+		plannedIndex = 0;
+		
+		//Songs that were given to the targets before the play-list was read are left out
+		if(first > 0){
+			int[] ordered = order;
+			order = new int[songs.size() - first];
+			int next = 0;
 			
-			//Check if we reached the end
-			if(current == null){
-				isRunning = false;
-				return null;
+			for(int index : ordered){
+				if(index >= first)
+					order[next++] = index;
 			}
+		}
+		
+		//The play-lists written to the targets only keep the range of songs of each play-list
+		int[] starts = new int[batch.size()];
+		int[] ends = new int[batch.size()];
+		Arrays.fill(starts, first);
+		Arrays.fill(ends, first);
+		
+		for(int i = first; i < songs.size(); i++){
+			int original = deduplicator.original(i);
+			int playlist = songs.getPlaylist(i);
 			
-			done++;
+			if(original != CompactPlaylist.NONE){
+				duplicateFound(songs.get(i), songs.get(original));
+				songs.setOriginal(i, original);
+			}
 			
-			//Get the current song
-			File song = new File(current);
-			File newTarget;
+			if(ends[playlist] == first)
+				starts[playlist] = i;
 			
-			//Determine which method to use for copying
-			if(level == -1){
-				newTarget = createFoldersFromSource(song.getAbsolutePath());
-			}else{
-				newTarget = createFoldersBottomUp(song.getAbsolutePath());
+			ends[playlist] = i + 1;
+		}
+		
+		for(TargetDevice device : devices){
+			device.listInPlaylists(songs, starts, ends, this);
+		}
+		
+		metrics.record(Metrics.SCHEDULE, time);
+		
+		return null;
+	}
+	
+	/**
+	 * @return Whether the songs are copied in another order than the play-list order, the songs are already in the
+	 * play-lists written to the targets then
+	 */
+	public synchronized boolean isScheduled(){
+		return order != null;
+	}
+	
+	/**
+	 * @return The policy that decides when failed songs are tried again
+	 */
+	public RetryPolicy getRetryPolicy(){
+		return retry;
+	}
+	
+	/**
+	 * Large play-lists keep most of their songs in files in the spill folder, so they don't take space on the heap.
+	 * This is used by the play-lists selected after it.
+	 * @param folder The folder of the spill files or null to keep all songs on the heap
+	 */
+	public void setSpillFolder(File folder){
+		spillFolder = folder;
+	}
+	
+	/**
+	 * Selects if each song is copied on its own virtual thread instead of by a fixed number of workers. This helps when
+	 * the play-list has many small files and most of the time goes to waiting for the file system. Without a number of
+	 * workers each target copies many more songs at the same time in this mode. Virtual threads need Java 21, the
+	 * workers are platform threads on older versions.
+	 * @param virtual Whether each song gets its own virtual thread
+	 */
+	public void setVirtualThreads(boolean virtual){
+		virtualThreads = virtual;
+	}
+	
+	/**
+	 * @return Whether each song is copied on its own virtual thread, if this Java has them
+	 */
+	public boolean isVirtualThreads(){
+		return virtualThreads;
+	}
+	
+	/**
+	 * @param bytes Songs at least this large are copied in ranges at the same time, 0 means they are copied like the
+	 * other songs
+	 */
+	public void setLargeFileThreshold(long bytes){
+		large.setThreshold(bytes);
+	}
+	
+	/**
+	 * @param skip Whether songs that already have an identical copy in the target folder should be skipped
+	 * @param hash Whether the contents of the songs should be compared when their sizes match but dates don't
+	 */
+	public void setIncremental(boolean skip, boolean hash){
+		incremental = skip;
+		hashing = hash;
+	}
+	
+	/**
+	 * Songs that lead to the same file are always copied once to each target. This selects what else is done with
+	 * duplicate songs.
+	 * @param contents Whether songs in different files with the same contents are duplicates too
+	 * @param link Whether duplicates in different files are hard linked to the first copy instead of being skipped.
+	 * They are copied in targets that don't support hard links.
+	 */
+	public void setDuplicates(boolean contents, boolean link){
+		sameContents = contents;
+		linkDuplicates = link;
+	}
+	
+	/**
+	 * @param write Whether each play-list is written to the targets while copying, with the paths of the copies
+	 * instead of the songs
+	 * @param base The path of the target folders on the device that will play the songs, or null to write paths
+	 * relative to the play-lists
+	 */
+	public void setRewrite(boolean write, String base){
+		rewrite = write;
+		playlistBase = base;
+	}
+	
+	/**
+	 * This is called before the copy workers start. It prepares a TargetDevice for each target folder and loads their
+	 * manifests, which remember the songs that were copied before, and their journals. If it is selected the play-lists
+	 * that will be written to the targets are created too.
+	 * @param capacity The number of songs that can wait in the queue of each target
+	 * @return Null if everything is ready or a message that should be shown to the user
+	 */
+	public String startRun(int capacity){
+		metrics.start();
+		String message = "";
+		List<TargetDevice> prepared = new ArrayList<>();
+		
+		for(File folder : targets){
+			TargetDevice device = new TargetDevice(folder, getWorkers(folder), capacity, batch.getPlaylists(), level,
+					metrics);
+			device.setLinking(linkDuplicates && supportsLinks(folder));
+			device.setRateLimit(maxBytesPerSecond, maxFilesPerSecond);
+			prepared.add(device);
+			
+			try{
+				device.getManifest().load();
+			}catch(IOException e){
+				message += "Unable to read the manifest of " + folder + ", all songs will be checked: "
+						+ e.getMessage() + "\n";
 			}
 			
-			//Skip songs that are not in the selected root folder structure
-			if(newTarget == null){
-				return null;
+			try{
+				int resumed = device.getJournal().open();
+				
+				if(resumed > 0)
+					message += "Continuing an earlier run to " + folder + ", " + resumed
+							+ " songs were already copied\n";
+			}catch(IOException e){
+				message += "Unable to open the journal in " + folder + ": " + e.getMessage() + "\n";
 			}
+			
+			if(rewrite)
+				message += openPlaylists(device);
+		}
+		
+		devices = prepared;
+		deduplicator = new Deduplicator(songs, sameContents);
+		
+		return message.isEmpty() ? null : message;
+	}
+	
+	/**
+	 * This is called after all copy workers are finished. It saves the manifests of the target folders and closes the
+	 * journals, which are only kept if the play-list wasn't finished so the next run can continue. The play-lists
+	 * written to the targets only replace the older ones if they were finished.
+	 * @param finished Whether the workers processed the whole play-list
+	 * @return Null if everything is saved or a message that should be shown to the user
+	 */
+	public String finishRun(boolean finished){
+		metrics.stop();
+		String message = "";
+		
+		for(TargetDevice device : devices){
+			try{
+				device.getManifest().save();
+			}catch(IOException e){
+				message += "Unable to save the manifest of " + device + ": " + e.getMessage() + "\n";
+			}
+			
+			try{
+				device.getJournal().close(finished && isTotalKnown() && device.isRunning());
+			}catch(IOException e){
+				message += "Unable to close the journal in " + device + ": " + e.getMessage() + "\n";
+			}
+			
+			String closed = device.closePlaylists(finished && isTotalKnown() && device.isRunning());
+			
+			if(closed != null)
+				message += closed;
+		}
+		
+		return message.isEmpty() ? null : message;
+	}
+	
+	/**
+	 * Creates the play-lists that are written to a target while copying.
+	 * @param device The target
+	 * @return A message that should be shown to the user if the play-lists can't be written, otherwise nothing
+	 */
+	private String openPlaylists(TargetDevice device){
+		List<File> playlists = batch.getPlaylists();
+		PlaylistWriter[] writers = new PlaylistWriter[playlists.size()];
+		String[] names = batch.getNames();
+		
+		try{
+			for(int i = 0; i < writers.length; i++){
+				writers[i] = new PlaylistWriter(playlists.get(i), device.getFolder(), names[i], playlistBase);
+			}
+		}catch(IOException e){
+			//The play-lists that were created are deleted
+			for(PlaylistWriter writer : writers){
+				try{
+					if(writer != null)
+						writer.close(false);
+				}catch(IOException ex){
+					//The first error is shown
+				}
+			}
+			
+			return "Unable to write the play-lists to " + device + ": " + e.getMessage() + "\n";
+		}
+		
+		device.setWriters(writers);
+		
+		return "";
+	}
+	
+	/**
+	 * @return The target folders of the current run, these are prepared by startRun
+	 */
+	public List<TargetDevice> getTargets(){
+		return devices;
+	}
+	
+	/**
+	 * @return The strategy that copies the data of the songs
+	 */
+	public CopyStrategy getCopyStrategy(){
+		return strategy;
+	}
+	
+	/**
+	 * @return The number of bytes copied since the play-list was selected, this is used to measure throughput
+	 */
+	public long getBytesCopied(){
+		return bytes.get();
+	}
+	
+	/**
+	 * @param name The name of a copy strategy
+	 * @return A new strategy with the given name
+	 * @throws IllegalArgumentException If there is no strategy with this name
+	 */
+	private static CopyStrategy createStrategy(String name){
+		if(NioCopyStrategy.NAME.equalsIgnoreCase(name))
+			return new NioCopyStrategy(new StreamCopyStrategy());
+		else if(StreamCopyStrategy.NAME.equalsIgnoreCase(name))
+			return new StreamCopyStrategy();
+		else if(PipelinedCopyStrategy.NAME.equalsIgnoreCase(name))
+			return new PipelinedCopyStrategy(BufferPool.shared());
+		else
+			throw new IllegalArgumentException("Unknown copy strategy: " + name);
+	}
+	
+	/**
+	 * @param folder One of the target folders
+	 * @return The number of songs that will be copied to this folder at the same time
+	 */
+	public int getWorkers(File folder){
+		if(workers < 1 && virtualThreads && VirtualThreads.isSupported())
+			return CopyEngine.defaultWorkers(folder) * CopyEngine.VIRTUAL_FACTOR;
+		else if(workers < 1)
+			return CopyEngine.defaultWorkers(folder);
+		else
+			return workers;
+	}
+	
+	/**
+	 * Reads the rest of the play-list so it can be planned before copying. After this nextEntry returns the songs that
+	 * have been read here.
+	 * @return All songs in the play-list
+	 * @throws IOException If the play-list can't be read
+	 */
+	public synchronized CompactPlaylist readPlaylist() throws IOException{
+		if(planned)
+			return songs;
+		
+		//Songs that have already been given to the targets aren't given again
+		plannedIndex = songs.size();
+		PlaylistEntry entry;
+		
+		while((entry = batch.next()) != null){
+			songs.add(entry);
+		}
+		
+		closePlaylist();
+		planned = true;
+		total = songs.size() * Math.max(1, targets.size());
+		
+		return songs;
+	}
+	
+	/**
+	 * Checks if all songs will fit in the target folders before copying. This reads the whole play-list.
+	 * @return A report for each target folder
+	 * @throws IOException If the play-list or the space in a target can't be read
+	 * @throws InterruptedException If the calling thread is interrupted while the sizes are read
+	 */
+	public List<SpacePlanner.Report> planSpace() throws IOException, InterruptedException{
+		metrics.start();
+		long time = System.nanoTime();
+		List<SpacePlanner.Report> reports = new SpacePlanner(this, PLANNING_THREADS).plan(readPlaylist(), targets);
+		metrics.record(Metrics.PLAN, time);
+		
+		return reports;
+	}
+	
+	/**
+	 * Creates the folders of all songs in every target before copying, so the copy workers only have to create the
+	 * songs themselves. This only does something if the play-list has been read for planning, otherwise the folders
+	 * are created by the workers when the first song in them is copied.
+	 * @return Null if all folders are created or a message that should be shown to the user
+	 */
+	public String prepareFolders(){
+		if(!planned)
+			return null;
+		
+		String message = "";
+		long time = System.nanoTime();
+		//The first song found in each folder, all songs of a folder are copied to the same folder in a target
+		int[] firsts = new int[songs.getFolderCount()];
+		Arrays.fill(firsts, CompactPlaylist.NONE);
+		
+		//Songs that are missing would leave empty folders behind
+		for(int i = 0; i < songs.size(); i++){
+			int folder = songs.getFolder(i);
+			
+			if(folder != CompactPlaylist.NONE && firsts[folder] == CompactPlaylist.NONE && isFound(i))
+				firsts[folder] = i;
+		}
+		
+		for(TargetDevice device : devices){
+			Set<File> folders = new HashSet<>();
+			
+			for(int first : firsts){
+				File copied = first == CompactPlaylist.NONE ? null : destinationOf(songs.get(first), device.getFolder());
 				
-			//Copy the file
-			FileUtils.copyFileToDirectory(song, newTarget);
-
-		} catch (IOException e) {			
-			//Stop immediately if there is no space left in the target device
-			if(e.getMessage().contains("not enough space")){
-				return "No space";
+				if(copied != null)
+					folders.add(copied.getParentFile());
 			}
 			
-			//Add the index of this file to the errors string that will be shown after execution stops
-			errors = errors.concat("Unable to copy song on line: " + currentIndex+"\n");
+			int failed = device.getFolders().prepare(folders);
+			
+			if(failed > 0)
+				message += "Unable to create " + failed + " folders in " + device + "\n";
+		}
+		
+		metrics.record(Metrics.PREPARE, time);
+		
+		return message.isEmpty() ? null : message;
+	}
+	
+	/**
+	 * @param index The index of a song in the play-list
+	 * @return Whether the song is a file, this is only checked if the planning didn't already find out
+	 */
+	private boolean isFound(int index){
+		int status = songs.getStatus(index) & (CompactPlaylist.FOUND | CompactPlaylist.MISSING);
+		
+		if(status == 0){
+			status = songs.getSong(index).isFile() ? CompactPlaylist.FOUND : CompactPlaylist.MISSING;
+			songs.addStatus(index, status);
+		}
+		
+		return (status & CompactPlaylist.FOUND) != 0;
+	}
+	
+	/**
+	 * @param entry A song in the play-list
+	 * @param target One of the target folders
+	 * @return The file the song will be copied to in the target folder or null if the song won't be copied
+	 */
+	File destinationOf(PlaylistEntry entry, File target){
+		PathMapper mapper = mappers.get(target);
+		
+		if(mapper == null){
+			mapper = new PathMapper(root, target, level);
+			PathMapper existing = mappers.putIfAbsent(target, mapper);
+			
+			if(existing != null)
+				mapper = existing;
+		}
+		
+		return mapper.map(entry.getSong());
+	}
+	
+	/**
+	 * Reads the next song from the play-list. Only the CopyEngine reads the play-list, each song is read once no matter
+	 * how many target folders there are.
+	 * @return The next song or null if the end of the play-list is reached
+	 * @throws IOException If the play-list can't be read
+	 */
+	public synchronized PlaylistEntry nextEntry() throws IOException{
+		if(planned && order != null)
+			return plannedIndex < order.length ? songs.get(order[plannedIndex++]) : null;
+		else if(planned)
+			return plannedIndex < songs.size() ? songs.get(plannedIndex++) : null;
+		
+		PlaylistEntry entry = batch.next();
+		total = batch.getCount() * Math.max(1, devices.size());
+		
+		//Check if we reached the end
+		if(entry == null)
+			closePlaylist();
+		else
+			songs.add(entry);
+		
+		return entry;
+	}
+	
+	/**
+	 * Checks if a song is the same as a song before it. This is called once for each song, before it is given to the
+	 * targets.
+	 * @param entry The song as it was read from the play-list
+	 * @return The first song that is the same as this one or null if this one should be copied
+	 */
+	public PlaylistEntry findOriginal(PlaylistEntry entry){
+		int index = songs.indexOf(entry);
+		
+		if(index == CompactPlaylist.NONE)
 			return null;
+		
+		//The duplicates have been found in play-list order before the order was changed, the songs kept by their
+		//size may get the original of their contents early and are left to sameContents
+		if(isScheduled()){
+			boolean sized = (songs.getStatus(index) & CompactPlaylist.SIZED) != 0;
+			int original = sized ? CompactPlaylist.NONE : songs.getOriginal(index);
+			
+			return original == CompactPlaylist.NONE ? null : songs.get(original);
 		}
 		
-		return null;
+		int original = deduplicator.original(index);
+		
+		if(original == CompactPlaylist.NONE)
+			return null;
+		
+		PlaylistEntry first = songs.get(original);
+		songs.setOriginal(index, original);
+		duplicateFound(entry, first);
+		
+		return first;
 	}
 	
 	/**
-	 * @return Returns the string that has the index of all files that failed to be copied. If this is empty then all
-	 * songs have been successfully copied
+	 * Checks if a song has the same contents as a song before it in another file. The first worker that finds it
+	 * reports the duplicate.
+	 * @param entry The song as it was read from the play-list
+	 * @return The first song with the same contents or null if there is none
 	 */
-	public String getErrors(){
-		return errors;
+	private PlaylistEntry sameContents(PlaylistEntry entry){
+		int index = songs.indexOf(entry);
+		int original = index == CompactPlaylist.NONE ? CompactPlaylist.NONE : deduplicator.sameContents(index);
+		
+		if(original == CompactPlaylist.NONE)
+			return null;
+		
+		PlaylistEntry first = songs.get(original);
+		
+		synchronized(this){
+			if((songs.getStatus(index) & CompactPlaylist.REPORTED) == 0){
+				songs.addStatus(index, CompactPlaylist.REPORTED);
+				duplicateFound(entry, first);
+			}
+		}
+		
+		return first;
+	}
+	
+	/**
+	 * @param entry A song
+	 * @param copied The file the song is copied to
+	 * @param device The target the song is copied to
+	 * @return Whether another song of the play-lists is copied to the same file in the target
+	 */
+	private boolean isClaimed(PlaylistEntry entry, File copied, TargetDevice device){
+		int index = songs.indexOf(entry);
+		
+		if(index == CompactPlaylist.NONE)
+			return false;
+		
+		int first = device.claim(LongIntMap.hash(copied.getPath()), index);
+		
+		if(first == index)
+			return false;
+		
+		//Different copies with the same hash are very unlikely, these copies are told apart by the copies themselves
+		if(!copied.equals(destinationOf(songs.get(first), device.getFolder())))
+			first = device.claim(copied, index);
+		
+		return first != index;
 	}
 	
 	/**
-	 * This function is used to copy songs when the "copy contents" option is selected.
-	 * @param song Full path of the song to be copied
-	 * @return Returns the path that will be the target to copy this song
+	 * Handles a duplicate song in one of the targets. If both songs are copied to the same file in the target the
+	 * duplicate is skipped. Otherwise it is skipped, linked later by linkDuplicates or copied, depending on the
+	 * selected options.
+	 * @param entry The duplicate song
+	 * @param original The first song that is the same as this one
+	 * @param device One of the targets
+	 * @return The result of the duplicate in the target or null if it should be copied like any other song
 	 */
-	private File createFoldersFromSource(String song){
-		//Get the folders inside the source folder
-		int start = song.indexOf(root.getName());
-		int end = song.lastIndexOf(File.separatorChar);
+	public CopyResult duplicate(PlaylistEntry entry, PlaylistEntry original, TargetDevice device){
+		File copied = destinationOf(entry, device.getFolder());
+		File first = destinationOf(original, device.getFolder());
+		
+		if(copied == null){
+			device.finishInPlaylist(entry, null, false);
+			songDone(entry, device);
+			return CopyResult.of(entry, CopyResult.Outcome.OUTSIDE, null);
+		}
 		
-		//This song is not in the root folder structure
-		if(start == -1)
+		//The first song isn't copied to this target so this one is the first copy
+		if(first == null)
 			return null;
 		
-		//Create the folders if they are missing
-		File newTarget = new File(target.getAbsolutePath() +File.separator+ song.substring(start, end)+File.separator);
-
-		return newTarget;
+		if(linkDuplicates && !copied.equals(first) && !device.isLinking())
+			return null;
+		
+		//The play-list points to the first copy since the link is only made after all songs are copied
+		device.finishInPlaylist(entry, first, true);
+		
+		if(linkDuplicates && !copied.equals(first)){
+			device.addLink(entry, first);
+			return CopyResult.of(entry, CopyResult.Outcome.DUPLICATE, copied);
+		}
+		
+		songSkipped(device);
+		songDone(entry, device);
+		return CopyResult.of(entry, CopyResult.Outcome.DUPLICATE, first);
 	}
 	
 	/**
-	 * This function is used to copy songs when the "copy from bottom" option is selected.
-	 * @param song Full path of the song to be copied
-	 * @return Returns the path that will be the target to copy this song
+	 * Hard links the duplicate songs of a target to the copies of their first songs. This is called after all songs
+	 * have been copied to the target so the first copies are complete. A duplicate whose first song couldn't be
+	 * copied is counted as an error.
+	 * @param device One of the targets
 	 */
-	private File createFoldersBottomUp(String song){
-		//Get all the folders. We don't want to include the last file separator.
-		int start = song.indexOf(File.separatorChar);
-		int end = song.lastIndexOf(File.separatorChar);
+	public void linkDuplicates(TargetDevice device){
+		for(Map.Entry<PlaylistEntry, File> link : device.takeLinks().entrySet()){
+			PlaylistEntry entry = link.getKey();
+			
+			if(!device.isRunning())
+				return;
+			
+			long time = System.nanoTime();
+			File copied = destinationOf(entry, device.getFolder());
+			
+			try{
+				if(copied.exists() && Files.isSameFile(copied.toPath(), link.getValue().toPath())){
+					songSkipped(device);
+					continue;
+				}
+				
+				//The link is made under the temporary name too so an older copy is only replaced by a complete link
+				device.getFolders().ensure(copied.getParentFile());
+				File partial = new File(copied.getParentFile(), copied.getName() + PARTIAL_SUFFIX);
+				Files.deleteIfExists(partial.toPath());
+				Files.createLink(partial.toPath(), link.getValue().toPath());
+				commit(partial, copied);
+				device.getManifest().copied(entry.getSong(), copied, null);
+				metrics.record(Metrics.LINK, time);
+			}catch(IOException | UnsupportedOperationException e){
+				addError(CopyResult.failed(entry, CopyResult.Cause.of(e), copied, e), device);
+			}finally{
+				songDone(entry, device);
+			}
+		}
+	}
+	
+	/**
+	 * @param folder A target folder
+	 * @return Whether hard links can be made in the folder
+	 */
+	private static boolean supportsLinks(File folder){
+		Path probe = null;
+		Path link = null;
+		
+		try{
+			probe = Files.createTempFile(folder.toPath(), ".m3t-link", null);
+			link = probe.resolveSibling(probe.getFileName() + "-link");
+			Files.createLink(link, probe);
+			return true;
+		}catch(IOException | UnsupportedOperationException e){
+			return false;
+		}finally{
+			try{
+				if(link != null)
+					Files.deleteIfExists(link);
+				
+				if(probe != null)
+					Files.deleteIfExists(probe);
+			}catch(IOException e){
+				//Only a small file is left behind
+			}
+		}
+	}
+	
+	/**
+	 * Copies a single song to the folder determined by the selected copying option in the given target. If the song
+	 * fails for a reason that may go away it is tried again after a wait, and if it keeps failing it is deferred so it
+	 * can be tried once more after the other songs. If the song fails because the target is full or gone the result is
+	 * fatal and the target should be stopped. This is called by all of the copy workers at the same time.
+	 * @param entry The song as it was read from the play-list
+	 * @param device The target the song will be copied to
+	 * @param last Whether this is the last pass over the song, a song that keeps failing fails here
+	 * @return What happened to the song
+	 */
+	public CopyResult copyFile(PlaylistEntry entry, TargetDevice device, boolean last){
+		File copied = null;
+		CopyResult result = null;
+		PlaylistEntry original = sameContents(entry);
 		
-		//Determine the number of folders
-		String folders = song.substring(start, end);
-		int count = 0;
-		int index = 0;
+		//Songs with the same contents are found here by the workers so hashing them doesn't hold up the play-list
+		if(original != null && (result = duplicate(entry, original, device)) != null)
+			return result;
 		
-		for(index = 0; index < folders.length(); index++){
-		    if( folders.charAt(index) == File.separatorChar) {
-		        count++;
-		    } 
+		try {
+			copied = destinationOf(entry, device.getFolder());
+			
+			//Skip songs that are not in the selected root folder structure
+			if(copied == null){
+				result = CopyResult.of(entry, CopyResult.Outcome.OUTSIDE, null);
+				return result;
+			}
+			
+			//Two different songs copied to the same file would write the same partial file at the same time
+			if(isClaimed(entry, copied, device)){
+				result = CopyResult.failed(entry, CopyResult.Cause.SAME_DESTINATION, copied, null);
+				addError(result, device);
+				return result;
+			}
+			
+			for(int attempt = 1; ; attempt++){
+				result = copyOnce(entry, device, copied);
+				
+				if(result.getOutcome() == CopyResult.Outcome.COPIED)
+					device.getLimit().succeeded();
+				else if(RetryPolicy.isTransient(result))
+					device.getLimit().failed();
+				
+				if(!retry.shouldRetry(result, attempt) || !device.isRunning())
+					break;
+				
+				metrics.count(Metrics.RETRIES, 1);
+				
+				try{
+					Thread.sleep(retry.getDelay(attempt));
+				}catch(InterruptedException e){
+					//The target is being stopped
+					Thread.currentThread().interrupt();
+					result = CopyResult.of(entry, CopyResult.Outcome.CANCELLED, null);
+					return result;
+				}
+			}
+			
+			//The device may have recovered by the time the other songs are finished
+			if(!last && RetryPolicy.isTransient(result) && retry.getAttempts() > 1){
+				device.defer(entry);
+				result = new CopyResult(entry, CopyResult.Outcome.DEFERRED, result.getCause(), copied, 0,
+						result.getDetail());
+				return result;
+			}
+			
+			//The song is kept with its cause so it can be shown after execution stops
+			if(result.isFailed())
+				addError(result, device);
+			
+			return result;
+		} finally {
+			//Deferred songs are finished when they are tried again, the play-list keeps their place meanwhile
+			if(result != null && result.getOutcome() == CopyResult.Outcome.DEFERRED){
+				device.deferInPlaylist(entry, copied);
+			}else{
+				//The play-list written to the target only points to songs that have a copy
+				boolean listed = result != null && (result.getOutcome() == CopyResult.Outcome.COPIED
+						|| result.getOutcome() == CopyResult.Outcome.SKIPPED);
+				device.finishInPlaylist(entry, listed ? copied : null, false);
+				songDone(entry, device);
+			}
 		}
+	}
+	
+	/**
+	 * Tries to copy a song once.
+	 * @param entry The song as it was read from the play-list
+	 * @param device The target the song will be copied to
+	 * @param copied The file the song will be copied to
+	 * @return What happened to the song, a failed song isn't counted here
+	 */
+	private CopyResult copyOnce(PlaylistEntry entry, TargetDevice device, File copied){
+		File song = entry.getSong();
+		File partial = null;
 		
-		//Set the folder depth if needed
-		int depth = Math.min(level, count);
+		try {
+			File newTarget = copied.getParentFile();
+			long time = System.nanoTime();
+			
+			//Skip songs that an earlier run of this play-list has already copied
+			if(device.getJournal().isCompleted(entry, copied)){
+				metrics.record(Metrics.STAT, time);
+				songSkipped(device);
+				return CopyResult.of(entry, CopyResult.Outcome.SKIPPED, copied);
+			}
+			
+			boolean existed = copied.exists();
+				
+			//Never copy a song onto itself, the strategy would truncate it before reading it
+			if(existed && Files.isSameFile(song.toPath(), copied.toPath())){
+				throw new FileSystemException(song.getPath(), copied.getPath(),
+						"Source and destination are the same file");
+			}
+			
+			//Skip songs that have been copied before and haven't changed since
+			if(incremental && existed && device.getManifest().isUnchanged(song, copied, hashing)){
+				metrics.record(Metrics.STAT, time);
+				songSkipped(device);
+				return CopyResult.of(entry, CopyResult.Outcome.SKIPPED, copied);
+			}
+			
+			//Copy the file
+			time = metrics.record(Metrics.STAT, time);
+			
+			if(device.getFileRate().acquire(1) > 0)
+				time = metrics.record(Metrics.THROTTLE, time);
+			
+			device.getFolders().ensure(newTarget);
+			time = metrics.record(Metrics.MKDIR, time);
+			
+			//The song is copied under a temporary name so a copy with the real name is always complete
+			partial = new File(newTarget, song.getName() + PARTIAL_SUFFIX);
+			long copiedBytes;
+			String checksum = null;
+			
+			if(verify == null){
+				copiedBytes = device.getStrategy(large.accepts(song) ? large : strategy).copy(song, partial);
+				time = metrics.record(Metrics.COPY, time);
+			}else{
+				StreamChecksum expected = StreamChecksum.create(verify);
+				copiedBytes = device.getChunkedStrategy().copy(song, partial, expected);
+				time = metrics.record(Metrics.COPY, time);
+				
+				//The copy is checked before it gets its real name so a broken copy is never taken for a good one
+				checksum = expected.getValue();
+				String found = StreamChecksum.of(partial, verify, directRead);
+				time = metrics.record(Metrics.VERIFY, time);
+				
+				if(!checksum.equals(found))
+					throw new ChecksumMismatchException(copied, checksum, found);
+			}
+			
+			//The data has to be on the device before the real name and the journal say that the song is complete
+			force(partial);
+			time = metrics.record(Metrics.FSYNC, time);
+			commit(partial, copied);
+			time = metrics.record(Metrics.RENAME, time);
+			partial = null;
+			
+			bytes.addAndGet(copiedBytes);
+			device.addBytes(copiedBytes);
+			metrics.count(Metrics.COPIED, 1);
+			metrics.count(Metrics.BYTES, copiedBytes);
+			device.getManifest().copied(song, copied, checksum);
+			device.getJournal().completed(entry, copiedBytes, device.relativize(copied));
+			metrics.record(Metrics.JOURNAL, time);
+			
+			return new CopyResult(entry, CopyResult.Outcome.COPIED, CopyResult.Cause.NONE, copied, copiedBytes, null);
+		} catch (IOException e) {
+			//These have to be checked before the half written song is deleted and its space is free again
+			CopyResult.Cause cause = CopyResult.Cause.of(e);
+			
+			if(!device.getFolder().isDirectory())
+				cause = CopyResult.Cause.TARGET_GONE;
+			else if(isNoSpace(device.getFolder(), song))
+				cause = CopyResult.Cause.NO_SPACE;
+			
+			//Don't leave half written songs behind
+			if(partial != null){
+				FileUtils.deleteQuietly(partial);
+			}
+			
+			//The copy was interrupted because the workers are being stopped, this is not the songs fault
+			if(!device.isRunning() && (e instanceof ClosedByInterruptException || e instanceof InterruptedIOException)){
+				return CopyResult.of(entry, CopyResult.Outcome.CANCELLED, null);
+			}
+			
+			return CopyResult.failed(entry, cause, copied, e);
+		} catch (InterruptedException e) {
+			//The target is being stopped while the song waits for the rate limit
+			Thread.currentThread().interrupt();
+			
+			return CopyResult.of(entry, CopyResult.Outcome.CANCELLED, null);
+		}
+	}
+	
+	/**
+	 * Decides if a copy failed because the target is full. This looks at the free space in the target instead of the
+	 * message of the exception, which depends on the operating system and its language.
+	 * @param target The target folder
+	 * @param song The song that couldn't be copied
+	 * @return True if the song doesn't fit in the space left in the target
+	 */
+	private static boolean isNoSpace(File target, File song){
+		try{
+			long needed = song == null ? 1 : Math.max(1, song.length());
+			
+			return Files.getFileStore(target.toPath()).getUsableSpace() < needed;
+		}catch(IOException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * Forces a copied song to the device so it isn't lost or left half written if the device is removed or the power
+	 * goes off right after it got its real name.
+	 * @param partial The song copied under its temporary name
+	 * @throws IOException If the song couldn't be forced
+	 */
+	private static void force(File partial) throws IOException{
+		try(FileChannel channel = FileChannel.open(partial.toPath(), StandardOpenOption.WRITE)){
+			channel.force(true);
+		}
+	}
+	
+	/**
+	 * Moves a completely copied song to its real name, replacing an older copy if there is one. The rename is atomic
+	 * where the file system supports it.
+	 * @param partial The song copied under its temporary name
+	 * @param copied The real name of the copy
+	 * @throws IOException If the song couldn't be renamed
+	 */
+	private static void commit(File partial, File copied) throws IOException{
+		try{
+			Files.move(partial.toPath(), copied.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move(partial.toPath(), copied.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Closes the play-list file once all songs have been read.
+	 */
+	private synchronized void closePlaylist(){
+		try{
+			batch.close();
+		}catch(IOException e){
+			//Everything has been read already
+		}
+	}
+	
+	/**
+	 * Counts a song that didn't need to be copied.
+	 * @param device The target the song was going to be copied to
+	 */
+	private synchronized void songSkipped(TargetDevice device){
+		skipped++;
+		device.songSkipped();
+		metrics.count(Metrics.SKIPPED, 1);
+	}
+	
+	/**
+	 * Counts a processed song. The copy workers share the counter so this is done one worker at a time.
+	 * @param entry The song
+	 * @param device The target the song was processed for
+	 */
+	private synchronized void songDone(PlaylistEntry entry, TargetDevice device){
+		done++;
+		device.songDone();
+		batch.songDone(entry);
+	}
+	
+	/**
+	 * Keeps a duplicate song with the line of its first song.
+	 * @param entry The duplicate song
+	 * @param original The first song that is the same as this one
+	 */
+	private synchronized void duplicateFound(PlaylistEntry entry, PlaylistEntry original){
+		duplicated++;
+		duplicates.add(new CopyResult(entry, CopyResult.Outcome.DUPLICATE, CopyResult.Cause.NONE, null, 0,
+				batch.describe(original)));
+	}
+	
+	/**
+	 * Keeps the result of a song that couldn't be copied with the errors of its target.
+	 * @param result The result of the song
+	 * @param device The target the song couldn't be copied to
+	 */
+	private synchronized void addError(CopyResult result, TargetDevice device){
+		metrics.count(Metrics.ERRORS + result.getCause().getName(), 1);
+		failed++;
+		device.addError(result);
+		batch.addError(result.getEntry());
+	}
+	
+	/**
+	 * @return The measurements of the current run
+	 */
+	public Metrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * @return The progress, the queues of the targets and the metrics of the current run as a JSON object. This is
+	 * called while copying so the numbers may change while it is made.
+	 */
+	public String getMetricsJson(){
+		StringBuilder json = new StringBuilder("{\"running\":" + isRunning + ",\"total\":" + total + ",\"totalKnown\":"
+				+ isTotalKnown() + ",\"processed\":" + done + ",\"skipped\":" + skipped + ",\"failed\":" + failed
+				+ ",\"targets\":[");
+		List<TargetDevice> current = devices;
 		
-		//We will only create 'depth' many folders
-		for(index = 0; index < count - depth; index++){
-			folders = folders.substring(folders.indexOf(File.separatorChar, 1));
+		for(int i = 0; i < current.size(); i++){
+			TargetDevice device = current.get(i);
+			
+			if(i > 0)
+				json.append(',');
+			
+			json.append("{\"folder\":" + Metrics.quote(device.getFolder().getPath()) + ",\"workers\":"
+					+ device.getWorkers() + ",\"queued\":" + device.getQueued() + ",\"processed\":" + device.done
+					+ ",\"failed\":" + device.failed + ",\"bytes\":" + device.getBytesCopied() + "}");
 		}
 		
-		//Create the folders if they are missing
-		File newTarget = new File(target.getAbsolutePath() + File.separator + folders + File.separator);
-
-		return newTarget;
+		return json.append("],\"metrics\":").append(metrics.toJson()).append('}').toString();
+	}
+	
+	/**
+	 * @return The play-lists being copied
+	 */
+	public PlaylistBatch getBatch(){
+		return batch;
+	}
+	
+	/**
+	 * @return A line for each play-list with its progress and errors if there is more than one, otherwise nothing
+	 */
+	public String getPlaylistReport(){
+		if(batch == null || batch.size() < 2)
+			return "";
+		
+		return batch.getReport(Math.max(1, devices.size()));
+	}
+	
+	/**
+	 * @return The lines of the songs that are duplicates of a song before them
+	 */
+	public synchronized String getDuplicates(){
+		StringBuilder text = new StringBuilder();
+		
+		for(CopyResult result : duplicates.getResults()){
+			text.append("Song on ").append(batch.describe(result.getEntry())).append(" is the same as the song on ")
+					.append(result.getDetail()).append('\n');
+		}
+		
+		return text.append(duplicates.describeDropped()).toString();
+	}
+	
+	/**
+	 * @return Returns the string that has the index of all files that failed to be copied and why. If this is empty
+	 * then all songs have been successfully copied. With more than one target the errors are grouped by target. Targets
+	 * that were stopped are listed with the reason.
+	 */
+	public String getErrors(){
+		StringBuilder errors = new StringBuilder();
+		
+		for(TargetDevice device : devices){
+			ResultLog log = device.getErrors();
+			
+			if(device.getStopCause() != null)
+				errors.append("Stopped copying to ").append(device).append(", ").append(describeStop(device))
+						.append('\n');
+			
+			if(devices.size() > 1 && log.getCount() > 0)
+				errors.append("Errors for ").append(device).append(":\n");
+			
+			for(CopyResult result : log.getResultsInPlaylistOrder()){
+				errors.append("Unable to copy song on ").append(batch.describe(result.getEntry())).append(" (")
+						.append(result.getCause().getName()).append(")\n");
+			}
+			
+			errors.append(log.describeDropped());
+		}
+		
+		return errors.toString();
+	}
+	
+	/**
+	 * @param cause A fatal cause
+	 * @return Whether copying to any of the targets was stopped because of the cause
+	 */
+	public boolean isStopped(CopyResult.Cause cause){
+		for(TargetDevice device : devices){
+			if(device.getStopCause() == cause)
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @param device A target that was stopped because of a song
+	 * @return Why the target was stopped
+	 */
+	public static String describeStop(TargetDevice device){
+		if(device.getStopCause() == CopyResult.Cause.TARGET_GONE)
+			return "the target folder is no longer available";
+		else
+			return "there is not enough space";
 	}
 }
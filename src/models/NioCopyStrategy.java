@@ -0,0 +1,88 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This copies songs with FileChannel.transferTo so the operating system can move the data without copying it through
+ * the program (sendfile or copy_file_range on Linux). If the channels can't transfer the data directly the song is
+ * copied with the fallback strategy instead.
+ */
+public class NioCopyStrategy implements CopyStrategy{
+	public static final String NAME = "nio";
+	
+	//Large transfers are split so a single call doesn't hold on to the device for too long
+	private static final long CHUNK = 64L * 1024 * 1024;
+	
+	private final CopyStrategy fallback;
+	
+	/**
+	 * @param fallback This is used for the songs that can't be transferred directly
+	 */
+	public NioCopyStrategy(CopyStrategy fallback){
+		this.fallback = fallback;
+	}
+	
+	@Override
+	public long copy(File source, File destination) throws IOException{
+		long size;
+		long position = 0;
+		
+		try(FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			size = in.size();
+			
+			while(position < size){
+				long moved = in.transferTo(position, Math.min(CHUNK, size - position), out);
+				
+				//The channels can't transfer directly, try again with the fallback
+				if(moved <= 0)
+					break;
+				
+				position += moved;
+			}
+		}
+		
+		if(position < size)
+			return fallback.copy(source, destination);
+		
+		destination.setLastModified(source.lastModified());
+		
+		return size;
+	}
+	
+	@Override
+	public String getName(){
+		return NAME;
+	}
+}
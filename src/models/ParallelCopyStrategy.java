@@ -0,0 +1,203 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This copies large files like lossless mixes and videos in ranges at the same time. A single stream can't keep a fast
+ * SSD or RAID busy, and one huge song would otherwise be copied alone at the end of a run while the other workers have
+ * nothing left to do. The copy is given its full size first so the ranges can be written in any order, then each
+ * range is read and written at its own position. The Model gives the copy its real name once all ranges are done.
+ * 
+ * The ranges of all workers share one pool with a thread for each core, and their buffers come from the shared
+ * BufferPool.
+ */
+public class ParallelCopyStrategy implements CopyStrategy{
+	public static final String NAME = "parallel";
+	//Files at least this large are copied in ranges, in bytes
+	public static final long DEFAULT_THRESHOLD = 256L * 1024 * 1024;
+	
+	//The smallest range, smaller ones would spend more time switching than copying
+	private static final long MIN_RANGE = 32L * 1024 * 1024;
+	//The size of each read and write within a range
+	private static final int BUFFER = BufferPool.BUFFER_SIZE;
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "m3t-range-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	});
+	
+	private volatile long threshold;
+	
+	/**
+	 * @param threshold Files at least this large are copied in ranges, 0 means no file is
+	 */
+	public ParallelCopyStrategy(long threshold){
+		setThreshold(threshold);
+	}
+	
+	/**
+	 * @param threshold Files at least this large are copied in ranges, 0 means no file is
+	 */
+	public void setThreshold(long threshold){
+		this.threshold = Math.max(0, threshold);
+	}
+	
+	/**
+	 * @param source A song that will be copied
+	 * @return Whether the song is large enough to be copied in ranges
+	 */
+	public boolean accepts(File source){
+		return threshold > 0 && THREADS > 1 && source.length() >= threshold;
+	}
+	
+	@Override
+	public long copy(File source, File destination) throws IOException{
+		long size;
+		List<Future<Long>> ranges = new ArrayList<>();
+		boolean finished = false;
+		
+		try(final FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			final FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			size = in.size();
+			
+			//Give the copy its size before the ranges are written, a full target fails here instead of half way
+			if(size > 0)
+				out.write(ByteBuffer.allocate(1), size - 1);
+			
+			int count = (int)Math.max(1, Math.min(THREADS, size / MIN_RANGE));
+			long range = (size / count + BUFFER - 1) / BUFFER * BUFFER;
+			
+			for(long position = 0; position < size; position += range){
+				final long start = position;
+				final long end = Math.min(size, position + range);
+				
+				ranges.add(POOL.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws IOException, InterruptedException {
+						return copyRange(in, out, start, end);
+					}
+				}));
+			}
+			
+			long copied = 0;
+			
+			for(Future<Long> future : ranges){
+				copied += future.get();
+			}
+			
+			if(copied != size)
+				throw new IOException("The song changed while it was copied: " + source);
+			
+			finished = true;
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while copying the ranges of " + source);
+		}catch(ExecutionException e){
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			
+			throw new IOException(e.getCause());
+		}finally{
+			//Stop the other ranges if one of them failed
+			if(!finished){
+				for(Future<Long> future : ranges){
+					future.cancel(true);
+				}
+			}
+		}
+		
+		destination.setLastModified(source.lastModified());
+		
+		return size;
+	}
+	
+	/**
+	 * Copies a range of the song, the channels are shared by all ranges.
+	 * @param in The song
+	 * @param out The copy
+	 * @param start The position of the first byte of the range
+	 * @param end The position after the last byte of the range
+	 * @return The number of bytes copied
+	 * @throws IOException If the range couldn't be copied
+	 * @throws InterruptedException If the range is cancelled while it waits for a buffer
+	 */
+	private static long copyRange(FileChannel in, FileChannel out, long start, long end) throws IOException,
+			InterruptedException{
+		BufferPool pool = BufferPool.shared();
+		ByteBuffer buffer = pool.acquire();
+		long position = start;
+		
+		try{
+			while(position < end){
+				buffer.clear();
+				buffer.limit((int)Math.min(buffer.capacity(), end - position));
+				
+				if(in.read(buffer, position) < 0)
+					break;
+				
+				buffer.flip();
+				
+				while(buffer.hasRemaining()){
+					position += out.write(buffer, position);
+				}
+			}
+		}finally{
+			pool.release(buffer);
+		}
+		
+		return position - start;
+	}
+	
+	@Override
+	public String getName(){
+		return NAME;
+	}
+}
@@ -0,0 +1,167 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the PathMapper class that finds the folder a song is copied to in one of the target folders. Paths are
+ * handled as folder names instead of strings so the source folder is only matched as a real start of the path. The
+ * target folder of each source folder is remembered, so the other songs of an album only cost a lookup. The mapper is
+ * shared by the copy workers.
+ */
+public class PathMapper{
+	//The number of source folders remembered, it is emptied when it gets larger than this
+	private static final int CACHE_SIZE = 32768;
+	//This is remembered for the folders that are not copied since the cache can't keep null
+	private static final File OUTSIDE = new File("");
+	
+	private final Path root;
+	private final int rootCount;
+	//The folder the "copy contents" option copies into, the target folder with the name of the source folder
+	private final Path base;
+	private final Path target;
+	private final int level;
+	//The target folders of the source folders seen so far, songs of the same album only need this lookup
+	private final ConcurrentHashMap<String, File> folders = new ConcurrentHashMap<>();
+	private volatile Folder last;
+	
+	/**
+	 * This is the last source folder that was mapped and its target folder.
+	 */
+	private static class Folder{
+		final String source;
+		final File target;
+		
+		Folder(String source, File target){
+			this.source = source;
+			this.target = target;
+		}
+	}
+	
+	/**
+	 * @param root The source folder, this is only used by the "copy contents" option
+	 * @param target The target folder
+	 * @param level The number of folders copied by the "copy from bottom" option or -1 for "copy contents"
+	 */
+	public PathMapper(File root, File target, int level){
+		this.root = root == null ? null : root.getAbsoluteFile().toPath().normalize();
+		this.rootCount = this.root == null ? 0 : this.root.getNameCount();
+		this.target = target.getAbsoluteFile().toPath().normalize();
+		this.base = this.root == null || this.root.getFileName() == null ? this.target
+				: this.target.resolve(this.root.getFileName());
+		this.level = level;
+	}
+	
+	/**
+	 * @param song Full path of the song to be copied
+	 * @return The file the song will be copied to or null if the song is not in the source folder when the "copy
+	 * contents" option is used
+	 */
+	public File map(File song){
+		String path = song.getPath();
+		int end = path.lastIndexOf(File.separatorChar);
+		
+		if(end < 0)
+			return null;
+		
+		//Songs in the top folder of the file system keep the separator as their folder
+		int length = Math.max(end, 1);
+		
+		//Songs of an album usually follow each other, this check doesn't create any strings
+		Folder recent = last;
+		
+		if(recent != null && recent.source.length() == length && path.startsWith(recent.source))
+			return recent.target == OUTSIDE ? null : new File(recent.target, path.substring(end + 1));
+		
+		String parent = path.substring(0, length);
+		File folder = folders.get(parent);
+		
+		if(folder == null){
+			Path source = Paths.get(parent);
+			
+			//Relative play-lists can have . and .. folders in their paths
+			if(parent.indexOf(File.separator + ".") != -1)
+				source = source.normalize();
+			
+			Path mapped = level == -1 ? fromSource(source) : bottomUp(source);
+			
+			//Songs outside of the source folder are remembered too
+			folder = mapped == null ? OUTSIDE : mapped.toFile();
+			
+			if(folders.size() >= CACHE_SIZE)
+				folders.clear();
+			
+			folders.put(parent, folder);
+		}
+		
+		last = new Folder(parent, folder);
+		
+		if(folder == OUTSIDE)
+			return null;
+		
+		return new File(folder, path.substring(end + 1));
+	}
+	
+	/**
+	 * This is used to copy songs when the "copy contents" option is selected. The folders below the source folder
+	 * are kept, starting with the source folder itself.
+	 * @param parent The folder of the song
+	 * @return The target folder of the song or null if it is not inside the source folder
+	 */
+	private Path fromSource(Path parent){
+		if(!parent.startsWith(root))
+			return null;
+		
+		int count = parent.getNameCount();
+		
+		if(count == rootCount)
+			return base;
+		
+		return base.resolve(parent.subpath(rootCount, count));
+	}
+	
+	/**
+	 * This is used to copy songs when the "copy from bottom" option is selected. Only the last 'level' folders above
+	 * the song are kept.
+	 * @param parent The folder of the song
+	 * @return The target folder of the song
+	 */
+	private Path bottomUp(Path parent){
+		int count = parent.getNameCount();
+		int depth = Math.min(level, count);
+		
+		if(depth == 0)
+			return target;
+		
+		return target.resolve(parent.subpath(count - depth, count));
+	}
+}
@@ -0,0 +1,209 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This copies songs in two stages so the source and the target are busy at the same time. A reader thread reads the
+ * song ahead into buffers from the shared pool while the copy worker writes the buffers it has already read to the
+ * target. Reading and writing on one thread leaves one of the devices waiting all the time, which is most of the cost
+ * when they are different disks. Each song is read at most a few buffers ahead so the pool is shared fairly by the
+ * workers, and the pool itself limits the memory of all copies together.
+ */
+public class PipelinedCopyStrategy implements CopyStrategy{
+	public static final String NAME = "pipeline";
+	
+	//The number of buffers a song can be read ahead of the writes
+	private static final int AHEAD = 8;
+	//This marks the end of a song in the queue of its buffers
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+	//There is a reader for each song that is being copied, so there are as many as there are workers
+	private static final ExecutorService READERS = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "m3t-reader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	});
+	
+	private final BufferPool pool;
+	
+	/**
+	 * @param pool The buffers are taken from this pool
+	 */
+	public PipelinedCopyStrategy(BufferPool pool){
+		this.pool = pool;
+	}
+	
+	@Override
+	public long copy(File source, File destination) throws IOException{
+		long written = 0;
+		boolean finished = false;
+		Reader reader = new Reader(source);
+		Future<?> reading = READERS.submit(reader);
+		
+		try(FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer buffer;
+			
+			while((buffer = reader.buffers.take()) != END){
+				try{
+					while(buffer.hasRemaining()){
+						written += out.write(buffer);
+					}
+				}finally{
+					pool.release(buffer);
+					reader.ahead.release();
+				}
+			}
+			
+			finished = true;
+			
+			if(reader.error != null)
+				throw reader.error;
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while copying " + source);
+		}finally{
+			//Stop reading if the song couldn't be written, the buffers it has read go back to the pool
+			if(!finished){
+				reader.cancel();
+				reading.cancel(true);
+			}
+			
+			reader.drain();
+		}
+		
+		destination.setLastModified(source.lastModified());
+		
+		return written;
+	}
+	
+	@Override
+	public String getName(){
+		return NAME;
+	}
+	
+	/**
+	 * This reads a single song into buffers on a reader thread.
+	 */
+	private class Reader implements Runnable{
+		private final File source;
+		private final LinkedBlockingQueue<ByteBuffer> buffers = new LinkedBlockingQueue<>();
+		private final Semaphore ahead = new Semaphore(AHEAD);
+		private volatile boolean cancelled = false;
+		private volatile IOException error = null;
+		
+		/**
+		 * @param source The song
+		 */
+		Reader(File source){
+			this.source = source;
+		}
+		
+		@Override
+		public void run(){
+			try(FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)){
+				boolean end = false;
+				
+				while(!end && !cancelled){
+					ahead.acquire();
+					ByteBuffer buffer = pool.acquire();
+					
+					try{
+						//Fill the whole buffer so the writes are as large as the reads
+						while(buffer.hasRemaining()){
+							if(in.read(buffer) < 0){
+								end = true;
+								break;
+							}
+						}
+					}catch(IOException e){
+						pool.release(buffer);
+						throw e;
+					}
+					
+					buffer.flip();
+					
+					if(buffer.hasRemaining()){
+						buffers.add(buffer);
+					}else{
+						pool.release(buffer);
+						ahead.release();
+					}
+				}
+			}catch(IOException e){
+				error = e;
+			}catch(InterruptedException e){
+				//The copy has been cancelled
+			}finally{
+				buffers.add(END);
+				
+				//The writer may have stopped before the last buffers were added
+				if(cancelled)
+					drain();
+			}
+		}
+		
+		/**
+		 * Tells the reader to stop after the buffer it is reading.
+		 */
+		void cancel(){
+			cancelled = true;
+		}
+		
+		/**
+		 * Gives the buffers that won't be written back to the pool.
+		 */
+		void drain(){
+			ByteBuffer buffer;
+			
+			while((buffer = buffers.poll()) != null){
+				if(buffer != END)
+					pool.release(buffer);
+			}
+		}
+	}
+}
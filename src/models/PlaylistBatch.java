@@ -0,0 +1,266 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the PlaylistBatch class that reads one or more play-lists as if they were a single one. The play-lists are
+ * read one after the other and only one of them is open at a time. It also counts the songs of each play-list so the
+ * progress and the errors can be shown for each of them. A play-list that is selected more than once is only read the
+ * first time.
+ */
+public class PlaylistBatch{
+	private final List<File> playlists;
+	private final int[] songs;
+	private final int[] processed;
+	private final int[] failed;
+	private PlaylistParser parser = null;
+	private int current = 0;
+	private int count = 0;
+	private boolean finished = false;
+	
+	/**
+	 * @param playlists The play-lists that will be copied in this order
+	 * @throws FileNotFoundException If one of the play-lists doesn't exist
+	 */
+	public PlaylistBatch(List<File> playlists) throws FileNotFoundException{
+		if(playlists.isEmpty())
+			throw new FileNotFoundException("No play-lists were found");
+		
+		this.playlists = new ArrayList<>();
+		Set<File> seen = new HashSet<>();
+		
+		for(File playlist : playlists){
+			if(!playlist.isFile())
+				throw new FileNotFoundException("The play-list does not exist: " + playlist);
+			
+			if(seen.add(resolve(playlist)))
+				this.playlists.add(playlist);
+		}
+		
+		this.songs = new int[this.playlists.size()];
+		this.processed = new int[this.playlists.size()];
+		this.failed = new int[this.playlists.size()];
+	}
+	
+	/**
+	 * @param playlist A play-list
+	 * @return The play-list after links and . or .. folders are resolved, or its absolute path if it can't be resolved
+	 */
+	private static File resolve(File playlist){
+		try{
+			return playlist.getCanonicalFile();
+		}catch(IOException e){
+			return playlist.getAbsoluteFile();
+		}
+	}
+	
+	/**
+	 * @param file A play-list or a folder
+	 * @return The play-list itself, or all M3U and M3U8 files in the folder sorted by their names
+	 */
+	public static List<File> find(File file){
+		if(!file.isDirectory())
+			return Collections.singletonList(file);
+		
+		List<File> found = new ArrayList<>();
+		File[] files = file.listFiles();
+		
+		if(files == null)
+			return found;
+		
+		Arrays.sort(files);
+		
+		for(File child : files){
+			String name = child.getName().toLowerCase(Locale.ROOT);
+			
+			if(child.isFile() && (name.endsWith(".m3u") || name.endsWith(".m3u8")))
+				found.add(child);
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Reads the next song, moving on to the next play-list when one of them is finished.
+	 * @return The next song or null if all play-lists have been read
+	 * @throws IOException If a play-list can't be read
+	 */
+	public synchronized PlaylistEntry next() throws IOException{
+		while(!finished){
+			if(parser == null)
+				parser = new PlaylistParser(playlists.get(current), current);
+			
+			PlaylistEntry entry = parser.next();
+			
+			if(entry != null){
+				songs[current]++;
+				count++;
+				return entry;
+			}
+			
+			parser.close();
+			parser = null;
+			current++;
+			finished = current == playlists.size();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return The number of songs that have been read so far from all play-lists
+	 */
+	public synchronized int getCount(){
+		return count;
+	}
+	
+	/**
+	 * @return Whether all play-lists have been read, after this getCount returns the total number of songs
+	 */
+	public synchronized boolean isFinished(){
+		return finished;
+	}
+	
+	/**
+	 * Closes the play-list that is being read.
+	 * @throws IOException If the play-list can't be closed
+	 */
+	public synchronized void close() throws IOException{
+		if(parser != null){
+			try{
+				parser.close();
+			}finally{
+				parser = null;
+			}
+		}
+	}
+	
+	/**
+	 * @return The play-lists in the order they are read
+	 */
+	public List<File> getPlaylists(){
+		return Collections.unmodifiableList(playlists);
+	}
+	
+	/**
+	 * Names the play-lists written to the targets. Each one gets the name of its play-list without the extension, a
+	 * name that is already taken gets a number so two play-lists like a/fav.m3u and b/fav.m3u8 don't write the same
+	 * file. Names are compared without case since the targets are often FAT devices.
+	 * @return The names of the play-lists in the order they are read
+	 */
+	public String[] getNames(){
+		String[] names = new String[playlists.size()];
+		Set<String> taken = new HashSet<>();
+		
+		for(int i = 0; i < names.length; i++){
+			String name = playlists.get(i).getName();
+			int dot = name.lastIndexOf('.');
+			
+			if(dot > 0)
+				name = name.substring(0, dot);
+			
+			String unique = name;
+			
+			for(int number = 2; !taken.add(unique.toLowerCase(Locale.ROOT)); number++){
+				unique = name + "-" + number;
+			}
+			
+			names[i] = unique;
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * @return The number of play-lists
+	 */
+	public int size(){
+		return playlists.size();
+	}
+	
+	/**
+	 * Counts a song that has been processed in one of the targets.
+	 * @param entry The song
+	 */
+	synchronized void songDone(PlaylistEntry entry){
+		processed[entry.getPlaylist()]++;
+	}
+	
+	/**
+	 * Counts a song that couldn't be copied to one of the targets.
+	 * @param entry The song
+	 */
+	synchronized void addError(PlaylistEntry entry){
+		failed[entry.getPlaylist()]++;
+	}
+	
+	/**
+	 * @param entry A song in one of the play-lists
+	 * @return Where the song is, the line number and the name of the play-list if there are more than one
+	 */
+	public String describe(PlaylistEntry entry){
+		if(playlists.size() == 1)
+			return "line: " + entry.getLine();
+		
+		return "line: " + entry.getLine() + " of " + playlists.get(entry.getPlaylist()).getName();
+	}
+	
+	/**
+	 * @param targets The number of targets each song is copied to
+	 * @return A line for each play-list with the number of songs processed and failed
+	 */
+	public synchronized String getReport(int targets){
+		String report = "";
+		
+		for(int i = 0; i < playlists.size(); i++){
+			report = report.concat(playlists.get(i).getName() + ": processed " + processed[i] + " of "
+					+ songs[i] * targets + ", failed " + failed[i] + "\n");
+		}
+		
+		return report;
+	}
+	
+	/**
+	 * @param index The index of a play-list
+	 * @return The number of songs read from the play-list, the songs processed and the songs that failed
+	 */
+	public synchronized int[] getProgress(int index){
+		return new int[]{songs[index], processed[index], failed[index]};
+	}
+}
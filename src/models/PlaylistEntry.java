@@ -0,0 +1,137 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is a single song read from a play-list. It keeps the line number of the song and the index of its play-list
+ * when more than one play-list is copied, so errors can point back to the play-list, and the #EXTINF information if the
+ * play-list had it. Songs are equal if they are on the same line of the same play-list, since the songs of large
+ * play-lists are kept in a CompactPlaylist and made again when they are needed.
+ */
+public class PlaylistEntry{
+	private final File song;
+	private final String path;
+	private final int playlist;
+	private final int line;
+	private final int duration;
+	private final String title;
+	
+	/**
+	 * @param song The song with its path resolved against the folder of the play-list
+	 * @param path The path of the song as it is written in the play-list
+	 * @param line The line number of the song in the play-list, starting from 1
+	 * @param duration The duration from the #EXTINF line or -1 if there wasn't one
+	 * @param title The title from the #EXTINF line or null if there wasn't one
+	 */
+	public PlaylistEntry(File song, String path, int line, int duration, String title){
+		this(song, path, 0, line, duration, title);
+	}
+	
+	/**
+	 * @param song The song with its path resolved against the folder of the play-list
+	 * @param path The path of the song as it is written in the play-list
+	 * @param playlist The index of the play-list of the song when more than one play-list is copied
+	 * @param line The line number of the song in the play-list, starting from 1
+	 * @param duration The duration from the #EXTINF line or -1 if there wasn't one
+	 * @param title The title from the #EXTINF line or null if there wasn't one
+	 */
+	public PlaylistEntry(File song, String path, int playlist, int line, int duration, String title){
+		this.song = song;
+		this.path = path;
+		this.playlist = playlist;
+		this.line = line;
+		this.duration = duration;
+		this.title = title;
+	}
+	
+	/**
+	 * @return The song with an absolute path
+	 */
+	public File getSong(){
+		return song;
+	}
+	
+	/**
+	 * @return The path of the song as it is written in the play-list
+	 */
+	public String getPath(){
+		return path;
+	}
+	
+	/**
+	 * @return The index of the play-list of the song, this is 0 when a single play-list is copied
+	 */
+	public int getPlaylist(){
+		return playlist;
+	}
+	
+	/**
+	 * @return The line number of the song in the play-list, starting from 1
+	 */
+	public int getLine(){
+		return line;
+	}
+	
+	/**
+	 * @return The duration in seconds from the #EXTINF line or -1 if there wasn't one
+	 */
+	public int getDuration(){
+		return duration;
+	}
+	
+	/**
+	 * @return The title from the #EXTINF line or null if there wasn't one
+	 */
+	public String getTitle(){
+		return title;
+	}
+	
+	/**
+	 * @return Whether the play-list had an #EXTINF line for this song
+	 */
+	public boolean hasInfo(){
+		return title != null;
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if(!(other instanceof PlaylistEntry))
+			return false;
+		
+		PlaylistEntry entry = (PlaylistEntry)other;
+		
+		return playlist == entry.playlist && line == entry.line;
+	}
+	
+	@Override
+	public int hashCode(){
+		return playlist * 31 + line;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the PlaylistParser class that reads the songs in a M3U or M3U8 file. The play-list is read only once and
+ * songs are returned one at a time as they are read, so copying can start before the whole play-list is read.
+ * 
+ * The #EXTM3U header and the #EXTINF lines are optional. Blank lines and other comments are skipped. Relative paths are
+ * resolved against the folder the play-list is in.
+ */
+public class PlaylistParser implements Closeable{
+	private static final String HEADER = "#EXTM3U";
+	private static final String INFO = "#EXTINF:";
+	
+	private final BufferedReader buffReader;
+	private final File folder;
+	private final int index;
+	private int line = 0;
+	private int count = 0;
+	private boolean finished = false;
+	
+	/**
+	 * @param playlist The M3U or M3U8 file that will be read
+	 * @throws IOException If the play-list can't be opened
+	 */
+	public PlaylistParser(File playlist) throws IOException{
+		this(playlist, 0);
+	}
+	
+	/**
+	 * @param playlist The M3U or M3U8 file that will be read
+	 * @param index The index of the play-list when more than one play-list is copied, it is kept in every song
+	 * @throws IOException If the play-list can't be opened
+	 */
+	public PlaylistParser(File playlist, int index) throws IOException{
+		buffReader = new BufferedReader(new InputStreamReader(new FileInputStream(playlist), StandardCharsets.UTF_8));
+		folder = playlist.getAbsoluteFile().getParentFile();
+		this.index = index;
+	}
+	
+	/**
+	 * Reads lines until the next song is found.
+	 * @return The next song in the play-list or null if the end of the play-list is reached
+	 * @throws IOException If the play-list can't be read
+	 */
+	public PlaylistEntry next() throws IOException{
+		int duration = -1;
+		String title = null;
+		String current;
+		
+		while((current = buffReader.readLine()) != null){
+			line++;
+			
+			//Some editors save the play-list with a byte order mark
+			if(line == 1 && current.startsWith("\uFEFF"))
+				current = current.substring(1);
+			
+			current = current.trim();
+			
+			if(current.isEmpty() || current.equals(HEADER))
+				continue;
+			
+			//Keep the information for the song on the next line
+			if(current.startsWith(INFO)){
+				String info = current.substring(INFO.length());
+				int comma = info.indexOf(',');
+				
+				title = comma == -1 ? "" : info.substring(comma + 1).trim();
+				duration = parseDuration(comma == -1 ? info : info.substring(0, comma));
+				continue;
+			}
+			
+			//Any other directive or comment
+			if(current.startsWith("#"))
+				continue;
+			
+			count++;
+			return new PlaylistEntry(resolve(current), current, index, line, duration, title);
+		}
+		
+		finished = true;
+		return null;
+	}
+	
+	/**
+	 * @return The number of songs that have been read so far
+	 */
+	public int getCount(){
+		return count;
+	}
+	
+	/**
+	 * @return Whether the whole play-list has been read, after this getCount returns the total number of songs
+	 */
+	public boolean isFinished(){
+		return finished;
+	}
+	
+	@Override
+	public void close() throws IOException{
+		buffReader.close();
+	}
+	
+	/**
+	 * @param path The path of a song as it is written in the play-list
+	 * @return The song with an absolute path
+	 */
+	private File resolve(String path){
+		if(path.startsWith("file:")){
+			try{
+				return new File(URI.create(path));
+			}catch(IllegalArgumentException e){
+				//Not a valid URI, treat it as a regular path
+			}
+		}
+		
+		File song = new File(path);
+		
+		if(song.isAbsolute() || folder == null)
+			return song;
+		else
+			return new File(folder, path);
+	}
+	
+	/**
+	 * @param duration The duration part of an #EXTINF line, it may have extra attributes after the number
+	 * @return The duration in seconds or -1 if it is not a number
+	 */
+	private static int parseDuration(String duration){
+		String number = duration.trim();
+		int space = number.indexOf(' ');
+		
+		if(space != -1)
+			number = number.substring(0, space);
+		
+		try{
+			return (int) Double.parseDouble(number);
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+}
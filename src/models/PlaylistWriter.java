@@ -0,0 +1,433 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the PlaylistWriter class that writes a copied play-list to a target folder while its songs are being copied.
+ * The songs point to their copies so the play-list works on the device it was copied to. Songs that couldn't be
+ * copied are left out and the #EXTINF lines are kept.
+ * 
+ * The workers finish songs in any order, so each song is added when it is given to the target and written once all
+ * songs before it are finished. Only the songs waiting in the queue of the target are kept in memory. When the songs
+ * are copied in another order than the play-list order, any song may be finished long before the songs before it. The
+ * play-list is then listed as a range of songs in the CompactPlaylist and only a few bits are kept for each song, the
+ * copy is found again when the song is written.
+ * 
+ * A song that keeps failing is tried again after all other songs, so it doesn't hold up the songs after it. It is
+ * written at its place as if it was copied and its lines are only remembered, if it still fails they are left out
+ * when the play-list is closed. A duplicate whose first copy is still being made for another play-list is written
+ * the same way and left out if the first copy is still missing then.
+ */
+public class PlaylistWriter{
+	private final File written;
+	private final File partial;
+	private final Path folder;
+	private final String base;
+	private final char separator;
+	private final ArrayDeque<Slot> pending = new ArrayDeque<>();
+	private final Map<PlaylistEntry, Slot> slots = new HashMap<>();
+	private BufferedWriter writer;
+	private IOException error = null;
+	//The range of songs in the CompactPlaylist that is listed, these songs come after the added ones
+	private CompactPlaylist songs = null;
+	private Model model = null;
+	private File target = null;
+	private int start = 0;
+	private int end = 0;
+	private int next = 0;
+	//The bits of each listed song from the start of the range, if it is finished, if it has a copy and if the copy is
+	//the copy of its original that should only be written if it exists
+	private BitSet finished = null;
+	private BitSet copied = null;
+	private BitSet checked = null;
+	//The songs that will be tried again and their copies, the lines written for each of those copies, the lines of the
+	//songs that failed again and the songs that failed again before they were written
+	private final Map<PlaylistEntry, File> deferred = new HashMap<>();
+	private final Map<File, List<Integer>> placeholders = new HashMap<>();
+	private final BitSet dropped = new BitSet();
+	private final Set<PlaylistEntry> leftOut = new HashSet<>();
+	//The lines of the duplicates that point to a first copy that didn't exist yet when they were written
+	private final Map<File, List<Integer>> unchecked = new HashMap<>();
+	//The number of lines written so far
+	private int lines = 0;
+	
+	/**
+	 * This is a song that has been given to the target and its copy once it is finished.
+	 */
+	private static class Slot{
+		final PlaylistEntry entry;
+		File copy = null;
+		boolean check = false;
+		boolean finished = false;
+		
+		Slot(PlaylistEntry entry){
+			this.entry = entry;
+		}
+	}
+	
+	/**
+	 * @param playlist The play-list that is being copied
+	 * @param target The target folder, the play-list is written here with the M3U8 extension
+	 * @param name The name the play-list is written with, it has to be different for each play-list of the batch
+	 * @param base The path of the target folder on the device that will play the songs, or null to write paths
+	 * relative to the play-list
+	 * @throws IOException If the play-list can't be created
+	 */
+	public PlaylistWriter(File playlist, File target, String name, String base) throws IOException{
+		written = new File(target, name + ".m3u8");
+		partial = new File(target, name + ".m3u8" + Model.PARTIAL_SUFFIX);
+		folder = target.getAbsoluteFile().toPath();
+		this.target = target;
+		
+		//Windows paths keep their separator, all other paths use the one that works everywhere
+		separator = base != null && base.indexOf('\\') != -1 && base.indexOf('/') == -1 ? '\\' : '/';
+		
+		if(base == null || base.isEmpty() || base.charAt(base.length() - 1) == separator)
+			this.base = base == null ? "" : base;
+		else
+			this.base = base + separator;
+		
+		//The play-list may be in the target folder already
+		if(written.exists() && Files.isSameFile(written.toPath(), playlist.toPath()))
+			throw new IOException("The play-list would replace itself");
+		
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partial), StandardCharsets.UTF_8));
+		writer.write("#EXTM3U\n");
+		lines = 1;
+	}
+	
+	/**
+	 * Adds a song in the order of the play-list. This is called before the song is given to the target.
+	 * @param entry The song
+	 */
+	public synchronized void add(PlaylistEntry entry){
+		Slot slot = new Slot(entry);
+		pending.add(slot);
+		slots.put(entry, slot);
+	}
+	
+	/**
+	 * Lists a range of songs in play-list order without adding each of them. These are the songs after the added ones.
+	 * @param songs The songs that are being copied
+	 * @param start The index of the first song of this play-list in the range
+	 * @param end The index after the last song of this play-list
+	 * @param model This finds the copies of the songs when they are written
+	 */
+	public synchronized void list(CompactPlaylist songs, int start, int end, Model model){
+		this.songs = songs;
+		this.model = model;
+		this.start = start;
+		this.end = end;
+		next = start;
+		finished = new BitSet(end - start);
+		copied = new BitSet(end - start);
+		checked = new BitSet(end - start);
+	}
+	
+	/**
+	 * Finishes a song and writes it and the songs after it that are finished too.
+	 * @param entry The song
+	 * @param copy The copy of the song or null if it shouldn't be in the play-list
+	 * @param check Whether the copy should only be written if it exists, this is used for duplicates that point to the
+	 * copy of an earlier song. Earlier songs are always finished before the song is written.
+	 */
+	public synchronized void finish(PlaylistEntry entry, File copy, boolean check){
+		if(deferred.containsKey(entry)){
+			retried(entry, copy);
+			return;
+		}
+		
+		Slot slot = slots.remove(entry);
+		
+		if(slot != null){
+			slot.copy = copy;
+			slot.check = check;
+			slot.finished = true;
+		}else if(!finishListed(entry, copy, check)){
+			return;
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Finishes a song that will be tried again after the other songs. It is written as if it was copied so the songs
+	 * after it don't wait for it, finish tells later if it was copied.
+	 * @param entry The song
+	 * @param copy The file the song will be copied to
+	 */
+	public synchronized void defer(PlaylistEntry entry, File copy){
+		deferred.put(entry, copy);
+		Slot slot = slots.remove(entry);
+		
+		if(slot != null){
+			slot.copy = copy;
+			slot.check = false;
+			slot.finished = true;
+		}else if(!finishListed(entry, copy, false)){
+			deferred.remove(entry);
+			return;
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Keeps the lines of a song that was tried again if it was copied, otherwise they are left out.
+	 * @param entry The song
+	 * @param copy The copy of the song or null if it still failed
+	 */
+	private void retried(PlaylistEntry entry, File copy){
+		List<Integer> written = placeholders.remove(deferred.remove(entry));
+		
+		if(copy != null)
+			return;
+		
+		if(written == null){
+			leftOut.add(entry);
+			return;
+		}
+		
+		for(int line : written){
+			dropped.set(line);
+		}
+	}
+	
+	/**
+	 * Writes the finished songs at the start of the play-list.
+	 */
+	private void drain(){
+		while(!pending.isEmpty() && pending.peek().finished){
+			Slot written = pending.poll();
+			write(written.entry, written.copy, written.check);
+		}
+		
+		//The listed songs come after all of the added ones
+		while(pending.isEmpty() && next < end && finished.get(next - start)){
+			writeListed(next++);
+		}
+	}
+	
+	/**
+	 * Finishes a song in the listed range.
+	 * @param entry The song
+	 * @param copy The copy of the song or null if it shouldn't be in the play-list
+	 * @param check Whether the copy should only be written if it exists
+	 * @return False if the song isn't in the listed range
+	 */
+	private boolean finishListed(PlaylistEntry entry, File copy, boolean check){
+		if(songs == null)
+			return false;
+		
+		int index = songs.indexOf(entry);
+		
+		if(index < start || index >= end)
+			return false;
+		
+		finished.set(index - start);
+		copied.set(index - start, copy != null);
+		checked.set(index - start, check);
+		
+		return true;
+	}
+	
+	/**
+	 * Writes a finished song of the listed range. The copy is found again, a duplicate that points to the copy of its
+	 * original finds the copy of the original.
+	 * @param index The index of the song
+	 */
+	private void writeListed(int index){
+		if(!copied.get(index - start))
+			return;
+		
+		PlaylistEntry entry = songs.get(index);
+		boolean check = checked.get(index - start);
+		int original = songs.getOriginal(index);
+		PlaylistEntry first = check && original != CompactPlaylist.NONE ? songs.get(original) : entry;
+		
+		write(entry, model.destinationOf(first, target), check);
+	}
+	
+	/**
+	 * Closes the play-list. It replaces the play-list in the target if all songs have been processed, otherwise the
+	 * older play-list is kept.
+	 * @param finished Whether every song of the play-list has been processed
+	 * @throws IOException If the play-list couldn't be written
+	 */
+	public synchronized void close(boolean finished) throws IOException{
+		if(writer == null)
+			return;
+		
+		try{
+			writer.close();
+		}catch(IOException e){
+			if(error == null)
+				error = e;
+		}finally{
+			writer = null;
+		}
+		
+		if(!finished || error != null || !pending.isEmpty() || next < end){
+			Files.deleteIfExists(partial.toPath());
+			
+			if(error != null)
+				throw error;
+			
+			return;
+		}
+		
+		//Songs that were never tried again are left out too
+		for(List<Integer> written : placeholders.values()){
+			for(int line : written){
+				dropped.set(line);
+			}
+		}
+		
+		//Duplicates whose first copy couldn't be made are left out too
+		for(Map.Entry<File, List<Integer>> written : unchecked.entrySet()){
+			if(written.getKey().isFile())
+				continue;
+			
+			for(int line : written.getValue()){
+				dropped.set(line);
+			}
+		}
+		
+		if(!dropped.isEmpty())
+			leaveOut();
+		
+		Files.move(partial.toPath(), written.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Removes the lines of the songs that still failed when they were tried again and of the duplicates whose first
+	 * copy is missing from the written play-list.
+	 * @throws IOException If the play-list couldn't be written
+	 */
+	private void leaveOut() throws IOException{
+		File kept = new File(partial.getPath() + Model.PARTIAL_SUFFIX);
+		
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(partial),
+				StandardCharsets.UTF_8));
+				BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(kept),
+						StandardCharsets.UTF_8))){
+			String line;
+			
+			for(int number = 0; (line = reader.readLine()) != null; number++){
+				if(!dropped.get(number))
+					out.write(line + "\n");
+			}
+		}catch(IOException e){
+			Files.deleteIfExists(kept.toPath());
+			Files.deleteIfExists(partial.toPath());
+			throw e;
+		}
+		
+		Files.move(kept.toPath(), partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Writes a finished song if it has a copy. The first error is kept and thrown by close.
+	 * @param entry The song
+	 * @param copy The copy of the song or null if it shouldn't be in the play-list
+	 * @param check Whether the copy should only be written if it exists
+	 */
+	private void write(PlaylistEntry entry, File copy, boolean check){
+		if(copy == null || error != null || leftOut.remove(entry))
+			return;
+		
+		List<Integer> remembered = null;
+		
+		//The lines of a song that is tried again and of the duplicates that point to its copy are remembered
+		if(deferred.containsKey(entry)){
+			remembered = placeholders.get(copy);
+			
+			if(remembered == null){
+				remembered = new ArrayList<>();
+				placeholders.put(copy, remembered);
+			}
+		}else if(check && !copy.isFile()){
+			remembered = placeholders.get(copy);
+			
+			//The first copy may still be made for another play-list, it is checked again when the play-list is closed
+			if(remembered == null)
+				remembered = unchecked.get(copy);
+			
+			if(remembered == null){
+				remembered = new ArrayList<>();
+				unchecked.put(copy, remembered);
+			}
+		}
+		
+		String path = folder.relativize(copy.getAbsoluteFile().toPath()).toString();
+		
+		try{
+			if(entry.hasInfo()){
+				writer.write("#EXTINF:" + entry.getDuration() + "," + entry.getTitle() + "\n");
+				remember(remembered);
+			}
+			
+			writer.write(base + path.replace(File.separatorChar, separator) + "\n");
+			remember(remembered);
+		}catch(IOException e){
+			error = e;
+		}
+	}
+	
+	/**
+	 * Counts a written line.
+	 * @param remembered The lines of a song that is tried again, the line is added to them, or null
+	 */
+	private void remember(List<Integer> remembered){
+		if(remembered != null)
+			remembered.add(lines);
+		
+		lines++;
+	}
+}
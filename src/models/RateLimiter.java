@@ -0,0 +1,116 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the RateLimiter class that keeps copying to a target under a number of bytes or files per second. It is a
+ * token bucket that fills at the rate and holds up to one second of it, so a target that has been idle can copy one
+ * second worth at full speed. The workers of a target share it. A worker that takes more than the bucket has leaves
+ * it in debt and sleeps until the debt is paid, so the next worker waits for its own share after that. This keeps the
+ * rate right no matter how many workers copy at the same time. The rate can be changed while copying.
+ */
+public class RateLimiter{
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	//Units per second, 0 means there is no limit
+	private double rate = 0;
+	//The units that can be taken without waiting, this is negative while workers wait
+	private double tokens = 0;
+	//The value of System.nanoTime when the tokens were last filled
+	private long filled = System.nanoTime();
+	
+	/**
+	 * @param rate The number of units allowed per second, 0 or less means there is no limit
+	 */
+	public RateLimiter(double rate){
+		setRate(rate);
+	}
+	
+	/**
+	 * Changes the rate, the units taken so far are kept so the next worker doesn't get ahead of the ones waiting.
+	 * @param rate The number of units allowed per second, 0 or less means there is no limit
+	 */
+	public synchronized void setRate(double rate){
+		fill(System.nanoTime());
+		this.rate = Math.max(0, rate);
+		
+		//More than a second of debt made at a higher rate would hold the workers back for too long at the new one
+		tokens = Math.max(-this.rate, Math.min(tokens, this.rate));
+	}
+	
+	/**
+	 * @return The number of units allowed per second, 0 means there is no limit
+	 */
+	public synchronized double getRate(){
+		return rate;
+	}
+	
+	/**
+	 * @return Whether there is a limit at all
+	 */
+	public synchronized boolean isLimited(){
+		return rate > 0;
+	}
+	
+	/**
+	 * Takes units from the bucket and waits until the rate allows them.
+	 * @param units The number of bytes or files that are about to be copied
+	 * @return The time spent waiting in nanoseconds
+	 * @throws InterruptedException If the worker is interrupted while waiting
+	 */
+	public long acquire(long units) throws InterruptedException{
+		long wait;
+		
+		synchronized(this){
+			if(rate <= 0)
+				return 0;
+			
+			fill(System.nanoTime());
+			tokens -= units;
+			wait = tokens < 0 ? (long)(-tokens / rate * SECOND) : 0;
+		}
+		
+		if(wait > 0)
+			TimeUnit.NANOSECONDS.sleep(wait);
+		
+		return wait;
+	}
+	
+	/**
+	 * Adds the tokens for the time since the last fill, up to one second of them.
+	 * @param now The current value of System.nanoTime
+	 */
+	private void fill(long now){
+		if(rate > 0)
+			tokens = Math.min(rate, tokens + (now - filled) * rate / SECOND);
+		
+		filled = now;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the ResultLog class that keeps the results of the songs that should be reported, like the songs that
+ * failed. Only the first results are kept so a run where every song fails doesn't fill the memory, the rest are only
+ * counted by their cause.
+ */
+public class ResultLog{
+	private final int limit;
+	private final List<CopyResult> results = new ArrayList<>();
+	private final int[] causes = new int[CopyResult.Cause.values().length];
+	private int count = 0;
+	
+	/**
+	 * @param limit The number of results that are kept
+	 */
+	public ResultLog(int limit){
+		this.limit = limit;
+	}
+	
+	/**
+	 * @param result A result that should be reported
+	 */
+	public synchronized void add(CopyResult result){
+		count++;
+		causes[result.getCause().ordinal()]++;
+		
+		if(results.size() < limit)
+			results.add(result);
+	}
+	
+	/**
+	 * @return The number of results added, including the ones that weren't kept
+	 */
+	public synchronized int getCount(){
+		return count;
+	}
+	
+	/**
+	 * @param cause The cause of a result
+	 * @return The number of results added with this cause
+	 */
+	public synchronized int getCount(CopyResult.Cause cause){
+		return causes[cause.ordinal()];
+	}
+	
+	/**
+	 * @return The results that were kept in the order they were added
+	 */
+	public synchronized List<CopyResult> getResults(){
+		return new ArrayList<>(results);
+	}
+	
+	/**
+	 * @return The results that were kept in the order of their songs in the play-lists
+	 */
+	public List<CopyResult> getResultsInPlaylistOrder(){
+		List<CopyResult> sorted = getResults();
+		
+		Collections.sort(sorted, new Comparator<CopyResult>() {
+			@Override
+			public int compare(CopyResult a, CopyResult b) {
+				int compared = Integer.compare(a.getEntry().getPlaylist(), b.getEntry().getPlaylist());
+				
+				return compared != 0 ? compared : Integer.compare(a.getEntry().getLine(), b.getEntry().getLine());
+			}
+		});
+		
+		return sorted;
+	}
+	
+	/**
+	 * @return A line that tells how many results weren't kept and their causes, or nothing if all were kept
+	 */
+	public synchronized String describeDropped(){
+		if(count <= results.size())
+			return "";
+		
+		StringBuilder text = new StringBuilder("... and " + (count - results.size()) + " more, in total");
+		String separator = " ";
+		
+		for(CopyResult.Cause cause : CopyResult.Cause.values()){
+			if(causes[cause.ordinal()] > 0){
+				text.append(separator).append(cause.getName()).append(' ').append(causes[cause.ordinal()]);
+				separator = ", ";
+			}
+		}
+		
+		return text.append('\n').toString();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the RetryPolicy class that decides when a song that failed should be copied again. USB hubs and card
+ * readers fail now and then for a moment, a song that failed that way is tried again a few times before it is given
+ * up on. Each try waits twice as long as the one before, with a random part so the workers of a target don't all try
+ * again at the same moment. Songs that fail for a reason that won't go away by itself are not tried again.
+ */
+public class RetryPolicy{
+	//The number of times a song is tried before it is left for the final pass
+	public static final int DEFAULT_ATTEMPTS = 3;
+	//How long to wait before the first retry, in milliseconds
+	private static final long BASE_DELAY = 250;
+	//The longest wait between two tries, in milliseconds
+	private static final long MAX_DELAY = 8000;
+	//How long to wait before the songs that kept failing are tried one last time, in milliseconds
+	private static final long FINAL_DELAY = 2000;
+	
+	private final int attempts;
+	
+	/**
+	 * @param attempts The number of times a song is tried, 1 means songs are never tried again
+	 */
+	public RetryPolicy(int attempts){
+		this.attempts = Math.max(1, attempts);
+	}
+	
+	/**
+	 * @param result The result of the last try of a song
+	 * @param attempt The number of times the song has been tried, starting from 1
+	 * @return Whether the song should be tried again in the same pass
+	 */
+	public boolean shouldRetry(CopyResult result, int attempt){
+		return attempt < attempts && isTransient(result);
+	}
+	
+	/**
+	 * @param result The result of a song
+	 * @return Whether the song failed for a reason that may go away if it is tried again
+	 */
+	public static boolean isTransient(CopyResult result){
+		return result.isFailed() && result.getCause().isTransient();
+	}
+	
+	/**
+	 * Gives the wait before the next try. The wait doubles with each try up to the maximum, and a random half of it
+	 * is left out.
+	 * @param attempt The number of times the song has been tried, starting from 1
+	 * @return How long to wait before the next try, in milliseconds
+	 */
+	public long getDelay(int attempt){
+		long delay = BASE_DELAY << Math.min(attempt - 1, 16);
+		delay = Math.min(delay, MAX_DELAY);
+		
+		return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+	
+	/**
+	 * @return How long to wait before the songs that kept failing are tried one last time, in milliseconds
+	 */
+	public long getFinalDelay(){
+		return attempts > 1 ? FINAL_DELAY : 0;
+	}
+	
+	/**
+	 * @return The number of times a song is tried
+	 */
+	public int getAttempts(){
+		return attempts;
+	}
+}
@@ -0,0 +1,301 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the SpacePlanner class that checks if the songs will fit in the target folders before anything is copied.
+ * The sizes of the songs and of any copies already in the targets are read by a number of threads at the same time,
+ * since on large play-lists this is mostly waiting for the devices.
+ */
+public class SpacePlanner{
+	//The number of songs each thread checks at a time
+	private static final int BATCH = 256;
+	
+	private final Model model;
+	private final int threads;
+	
+	/**
+	 * This is the result of planning for a single target folder.
+	 */
+	public static class Report{
+		public final File target;
+		public final int songs;
+		public final long needed;
+		public final long usable;
+		//The number of songs that fit, counting from the start of the play-list
+		public final int fitting;
+		//The play-list line of the last song that fits or 0 if none of them fit
+		public final int lastFittingLine;
+		
+		/**
+		 * @param target The target folder
+		 * @param songs The number of songs that will be copied to the target
+		 * @param needed The number of bytes needed to copy all of the songs
+		 * @param usable The number of bytes that can be used in the target
+		 * @param fitting The number of songs that fit, counting from the start of the play-list
+		 * @param lastFittingLine The play-list line of the last song that fits
+		 */
+		public Report(File target, int songs, long needed, long usable, int fitting, int lastFittingLine){
+			this.target = target;
+			this.songs = songs;
+			this.needed = needed;
+			this.usable = usable;
+			this.fitting = fitting;
+			this.lastFittingLine = lastFittingLine;
+		}
+		
+		/**
+		 * @return Whether all of the songs fit in the target
+		 */
+		public boolean fits(){
+			return needed <= usable;
+		}
+		
+		@Override
+		public String toString(){
+			String sizes = String.format("%s needs %.1f MB and has %.1f MB free", target, needed / (1024.0 * 1024.0),
+					usable / (1024.0 * 1024.0));
+			
+			if(fits())
+				return sizes + "\n";
+			
+			return sizes + ", only the first " + fitting + " of " + songs + " songs fit"
+					+ (lastFittingLine > 0 ? " (up to line " + lastFittingLine + ")" : "") + "\n";
+		}
+	}
+	
+	/**
+	 * @param model The Model class that decides where each song is copied
+	 * @param threads The number of threads that read the sizes
+	 */
+	public SpacePlanner(Model model, int threads){
+		this.model = model;
+		this.threads = Math.max(1, threads);
+	}
+	
+	/**
+	 * Adds up the space needed by the songs in each target. Copies that are already in a target only need the
+	 * difference in size. Each file is rounded up to the block size of the target since that is what it will use.
+	 * The sizes of the songs are kept with the songs along with whether they were found.
+	 * @param songs All songs in the play-list in their order
+	 * @param targets The target folders
+	 * @return A report for each target in the same order
+	 * @throws IOException If the space in a target can't be read
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for the threads
+	 */
+	public List<Report> plan(final CompactPlaylist songs, List<File> targets)
+			throws IOException, InterruptedException{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Report> reports = new ArrayList<>();
+		int count = songs.size();
+		
+		try{
+			//The sources are the same for all targets so they are only read once
+			run(pool, count, new Batch() {
+				@Override
+				public void check(int index) {
+					if(songs.getSize(index) != CompactPlaylist.UNKNOWN)
+						return;
+					
+					try{
+						BasicFileAttributes attributes = Files.readAttributes(songs.getSong(index).toPath(),
+								BasicFileAttributes.class);
+						
+						if(attributes.isRegularFile()){
+							songs.setSize(index, attributes.size());
+							songs.addStatus(index, CompactPlaylist.FOUND);
+							return;
+						}
+					}catch(IOException | InvalidPathException e){
+						//The song will fail when it is copied
+					}
+					
+					songs.setSize(index, 0);
+					songs.addStatus(index, CompactPlaylist.MISSING);
+				}
+			});
+			
+			for(final File target : targets){
+				FileStore store = Files.getFileStore(target.toPath());
+				final long block = blockSize(store);
+				final long[] needed = new long[count];
+				final long[] copied = new long[count];
+				
+				run(pool, count, new Batch() {
+					@Override
+					public void check(int index) {
+						File destination = model.destinationOf(songs.get(index), target);
+						
+						if(destination == null){
+							needed[index] = -1;
+							return;
+						}
+						
+						copied[index] = LongIntMap.hash(destination.getPath());
+						needed[index] = Math.max(0, roundUp(songs.getSize(index), block)
+								- roundUp(destination.length(), block));
+					}
+				});
+				
+				reports.add(report(target, songs, needed, copied, store.getUsableSpace()));
+			}
+		}finally{
+			pool.shutdownNow();
+		}
+		
+		return reports;
+	}
+	
+	/**
+	 * Finds the songs that fit in a target in the order of the play-list. Songs that are in the play-list more than
+	 * once are only counted the first time.
+	 * @param target The target folder
+	 * @param songs All songs in the play-list
+	 * @param needed The number of bytes each song needs in the target or -1 if it won't be copied to the target
+	 * @param copied The hash of the path of the file each song will be copied to
+	 * @param usable The number of bytes that can be used in the target
+	 * @return The report of the target
+	 */
+	private static Report report(File target, CompactPlaylist songs, long[] needed, long[] copied, long usable){
+		long total = 0;
+		int count = 0;
+		int fitting = 0;
+		int lastFittingLine = 0;
+		//Only the copies that more than one song goes to are remembered, sorting finds them without a large map
+		long[] sorted = copied.clone();
+		Arrays.sort(sorted);
+		LongIntMap shared = new LongIntMap(16);
+		
+		for(int i = 1; i < sorted.length; i++){
+			if(sorted[i] == sorted[i - 1])
+				shared.put(sorted[i], 0);
+		}
+		
+		sorted = null;
+		
+		for(int i = 0; i < needed.length; i++){
+			if(needed[i] < 0 || shared.get(copied[i]) > 0)
+				continue;
+			
+			//The first song of a shared copy is counted, the others find it in the map
+			if(shared.get(copied[i]) == 0)
+				shared.put(copied[i], 1);
+			
+			total += needed[i];
+			count++;
+			
+			if(total <= usable){
+				fitting++;
+				lastFittingLine = songs.getLine(i);
+			}
+		}
+		
+		return new Report(target, count, total, usable, fitting, lastFittingLine);
+	}
+	
+	/**
+	 * This is what the threads do for each song, the LocalityScheduler reads the places of the songs with it too.
+	 */
+	interface Batch{
+		/**
+		 * @param index The index of the song in the play-list
+		 */
+		public void check(int index);
+	}
+	
+	/**
+	 * Splits the songs into batches and checks them with the threads, waiting until all of them are done.
+	 * @param pool The threads
+	 * @param count The number of songs
+	 * @param batch What is done for each song
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for the threads
+	 */
+	static void run(ExecutorService pool, int count, final Batch batch) throws InterruptedException{
+		List<Future<Void>> futures = new ArrayList<>();
+		
+		for(int start = 0; start < count; start += BATCH){
+			final int first = start;
+			final int last = Math.min(count, start + BATCH);
+			
+			futures.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for(int i = first; i < last; i++){
+						batch.check(i);
+					}
+					
+					return null;
+				}
+			}));
+		}
+		
+		for(Future<Void> future : futures){
+			try{
+				future.get();
+			}catch(ExecutionException e){
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+	
+	/**
+	 * @param store The file store of a target
+	 * @return The size of the blocks files are stored in, or 1 if it can't be read
+	 */
+	private static long blockSize(FileStore store){
+		try{
+			return Math.max(1, store.getBlockSize());
+		}catch(IOException | UnsupportedOperationException e){
+			return 1;
+		}
+	}
+	
+	/**
+	 * @param size A file size
+	 * @param block A block size
+	 * @return The size rounded up to a whole number of blocks
+	 */
+	private static long roundUp(long size, long block){
+		return (size + block - 1) / block * block;
+	}
+}
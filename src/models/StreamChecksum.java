@@ -0,0 +1,157 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the StreamChecksum class that computes the checksum of a song from the chunks it is read in, so it can be
+ * computed while the song is copied. CRC32C is fast enough to keep up with any device and finds the damage cheap memory
+ * cards cause, SHA-256 is slower but also finds changes made on purpose. The value starts with the name of the
+ * algorithm so checksums of different algorithms are never mistaken for each other.
+ */
+public abstract class StreamChecksum{
+	public static final String CRC32C = "crc32c";
+	public static final String SHA256 = "sha-256";
+	
+	private static final int BUFFER = 64 * 1024;
+	
+	/**
+	 * @param buffer The next chunk of the song between its position and limit, the position isn't changed
+	 */
+	public abstract void update(ByteBuffer buffer);
+	
+	/**
+	 * @return The checksum of everything given to update, starting with the name of the algorithm
+	 */
+	public abstract String getValue();
+	
+	/**
+	 * @param algorithm The name of the algorithm, "crc32c" or "sha-256"
+	 * @return A new checksum that hasn't seen any data
+	 * @throws IllegalArgumentException If there is no algorithm with this name
+	 */
+	public static StreamChecksum create(String algorithm){
+		if(CRC32C.equals(algorithm)){
+			return new StreamChecksum(){
+				private final CRC32C crc = new CRC32C();
+				
+				@Override
+				public void update(ByteBuffer buffer){
+					crc.update(buffer.duplicate());
+				}
+				
+				@Override
+				public String getValue(){
+					return CRC32C + ":" + String.format("%08x", crc.getValue());
+				}
+			};
+		}else if(SHA256.equals(algorithm)){
+			final MessageDigest digest;
+			
+			try{
+				digest = MessageDigest.getInstance("SHA-256");
+			}catch(NoSuchAlgorithmException e){
+				throw new IllegalArgumentException(e);
+			}
+			
+			return new StreamChecksum(){
+				@Override
+				public void update(ByteBuffer buffer){
+					digest.update(buffer.duplicate());
+				}
+				
+				@Override
+				public String getValue(){
+					return SHA256 + ":" + hex(digest.digest());
+				}
+			};
+		}else{
+			throw new IllegalArgumentException("Unknown checksum: " + algorithm);
+		}
+	}
+	
+	/**
+	 * @param value A checksum as it is kept in the manifest
+	 * @return The name of its algorithm, checksums without a name are SHA-256 hashes of an older manifest
+	 */
+	public static String algorithmOf(String value){
+		int colon = value.indexOf(':');
+		
+		return colon < 0 ? SHA256 : value.substring(0, colon);
+	}
+	
+	/**
+	 * Reads a whole file and computes its checksum.
+	 * @param file The file
+	 * @param algorithm The name of the algorithm
+	 * @param direct Whether the file should be read from the device instead of the cache of the operating system,
+	 * the cache is used where this isn't supported
+	 * @return The checksum of the file, starting with the name of the algorithm
+	 * @throws IOException If the file can't be read
+	 */
+	public static String of(File file, String algorithm, boolean direct) throws IOException{
+		StreamChecksum checksum = create(algorithm);
+		
+		if(direct && DirectReader.read(file, checksum))
+			return checksum.getValue();
+		
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		
+		try(FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			while(in.read(buffer) != -1){
+				buffer.flip();
+				checksum.update(buffer);
+				buffer.clear();
+			}
+		}
+		
+		return checksum.getValue();
+	}
+	
+	/**
+	 * @param bytes The bytes of a hash
+	 * @return The bytes in hexadecimal
+	 */
+	static String hex(byte[] bytes){
+		StringBuilder hex = new StringBuilder();
+		
+		for(byte b : bytes){
+			hex.append(String.format("%02x", b));
+		}
+		
+		return hex.toString();
+	}
+}
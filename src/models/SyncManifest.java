@@ -0,0 +1,256 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the SyncManifest class that remembers the songs that have been copied to a target folder. It is saved in the
+ * target folder so the next run can tell which songs are unchanged without checking the copies again.
+ * 
+ * Each line has the size and the last modified date of the source song, its checksum if it was computed, and the
+ * path of the copy relative to the target folder. Checksums start with the name of their algorithm, the ones without
+ * a name are SHA-256 hashes.
+ */
+public class SyncManifest{
+	public static final String FILE_NAME = ".m3t-manifest";
+	
+	private static final String HEADER = "#M3T-MANIFEST 1";
+	//FAT keeps dates with a two second precision so copies may not have the exact date of the source
+	private static final long DATE_PRECISION = 2000;
+	
+	private final File target;
+	private final Map<String, Record> records = new ConcurrentHashMap<>();
+	private volatile boolean changed = false;
+	
+	/**
+	 * This is what the manifest knows about a single copy.
+	 */
+	public static class Record{
+		public final long size;
+		public final long modified;
+		public final String hash;
+		
+		/**
+		 * @param size The size of the source song in bytes
+		 * @param modified The last modified date of the source song
+		 * @param hash The checksum of the song or null if it wasn't computed
+		 */
+		public Record(long size, long modified, String hash){
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+	
+	/**
+	 * @param target The target folder the manifest belongs to
+	 */
+	public SyncManifest(File target){
+		this.target = target;
+	}
+	
+	/**
+	 * Reads the manifest from the target folder. Nothing is loaded if there is no manifest yet.
+	 * @throws IOException If the manifest exists but can't be read
+	 */
+	public void load() throws IOException{
+		File file = new File(target, FILE_NAME);
+		
+		if(!file.isFile())
+			return;
+		
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))){
+			String line = reader.readLine();
+			
+			//Ignore manifests that were written in a format we don't know
+			if(!HEADER.equals(line))
+				return;
+			
+			while((line = reader.readLine()) != null){
+				String[] parts = line.split("\t", 4);
+				
+				if(parts.length < 4)
+					continue;
+				
+				try{
+					String hash = parts[2].equals("-") ? null : parts[2];
+					records.put(parts[3], new Record(Long.parseLong(parts[0]), Long.parseLong(parts[1]), hash));
+				}catch(NumberFormatException e){
+					//Skip broken lines, the song will just be checked again
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the manifest to the target folder if anything has changed. It is written to a temporary file first so
+	 * a failure doesn't destroy the previous manifest.
+	 * @throws IOException If the manifest can't be written
+	 */
+	public void save() throws IOException{
+		if(!changed)
+			return;
+		
+		changed = false;
+		
+		File file = new File(target, FILE_NAME);
+		File temporary = new File(target, FILE_NAME + ".tmp");
+		
+		try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary),
+				StandardCharsets.UTF_8))){
+			writer.write(HEADER);
+			writer.newLine();
+			
+			for(Map.Entry<String, Record> entry : records.entrySet()){
+				Record record = entry.getValue();
+				
+				writer.write(record.size + "\t" + record.modified + "\t" + (record.hash == null ? "-" : record.hash)
+						+ "\t" + entry.getKey());
+				writer.newLine();
+			}
+		}
+		
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Decides if the copy of a song is the same as the song. The manifest is checked first, if it doesn't know the
+	 * copy then the size and the last modified date of the copy are compared. If the dates differ and hashing is
+	 * enabled, the contents are compared. A copy that was checked when it was copied has its checksum in the manifest,
+	 * then only the song is read.
+	 * @param source The song in the play-list
+	 * @param destination The copy of the song in the target folder
+	 * @param hashing Whether the contents should be compared when the dates are different
+	 * @return True if the song doesn't need to be copied again
+	 * @throws IOException If the songs can't be read
+	 */
+	public boolean isUnchanged(File source, File destination, boolean hashing) throws IOException{
+		long size = source.length();
+		long modified = source.lastModified();
+		String key = key(destination);
+		Record record = records.get(key);
+		
+		//The manifest already knows this copy, there is no need to look at it
+		if(record != null && record.size == size && record.modified == modified)
+			return true;
+		
+		if(!destination.isFile() || destination.length() != size)
+			return false;
+		
+		if(Math.abs(destination.lastModified() - modified) <= DATE_PRECISION){
+			put(destination, size, modified, record == null ? null : record.hash);
+			return true;
+		}
+		
+		if(!hashing)
+			return false;
+		
+		if(record != null && record.hash != null && record.size == size){
+			String algorithm = StreamChecksum.algorithmOf(record.hash);
+			
+			//Older manifests kept the hashes without the name of the algorithm
+			String hash = StreamChecksum.of(source, algorithm, false);
+			
+			if(hash.equals(record.hash) || hash.equals(StreamChecksum.SHA256 + ":" + record.hash)){
+				put(destination, size, modified, hash);
+				return true;
+			}
+			
+			return false;
+		}
+		
+		String hash = hash(source);
+		
+		if(hash.equals(hash(destination))){
+			put(destination, size, modified, hash);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Remembers a song that has just been copied.
+	 * @param source The song in the play-list
+	 * @param destination The copy of the song in the target folder
+	 * @param checksum The checksum the copy was checked with or null if it wasn't checked
+	 */
+	public void copied(File source, File destination, String checksum){
+		put(destination, source.length(), source.lastModified(), checksum);
+	}
+	
+	/**
+	 * @param destination The copy of a song in the target folder
+	 * @return What the manifest knows about the copy or null if it doesn't know it
+	 */
+	public Record get(File destination){
+		return records.get(key(destination));
+	}
+	
+	/**
+	 * @param destination The copy of a song in the target folder
+	 * @param size The size of the source song
+	 * @param modified The last modified date of the source song
+	 * @param hash The hash of the song or null if it wasn't computed
+	 */
+	private void put(File destination, long size, long modified, String hash){
+		records.put(key(destination), new Record(size, modified, hash));
+		changed = true;
+	}
+	
+	/**
+	 * @param destination The copy of a song in the target folder
+	 * @return The path of the copy relative to the target folder
+	 */
+	private String key(File destination){
+		return target.getAbsoluteFile().toPath().relativize(destination.getAbsoluteFile().toPath()).toString();
+	}
+	
+	/**
+	 * @param file The file that will be hashed
+	 * @return The SHA-256 hash of the file, starting with the name of the algorithm
+	 * @throws IOException If the file can't be read
+	 */
+	public static String hash(File file) throws IOException{
+		return StreamChecksum.of(file, StreamChecksum.SHA256, false);
+	}
+}
@@ -0,0 +1,539 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the TargetDevice class that keeps everything about one of the target folders while copying. Each target has
+ * its own queue of songs and its own workers so a slow device doesn't hold back a fast one, and it keeps its own
+ * manifest, journal and errors. When a target runs out of space or is removed only that target is stopped.
+ */
+public class TargetDevice{
+	//The number of failed songs whose results are kept, the rest are only counted
+	private static final int ERROR_LIMIT = 1000;
+	//How long the workers and the reader wait before checking if the target has been stopped, in milliseconds
+	private static final long POLL = 100;
+	
+	private final File folder;
+	private final int workers;
+	private final BlockingQueue<PlaylistEntry> queue;
+	private final SyncManifest manifest;
+	private final TransferJournal journal;
+	private final FolderCache folders = new FolderCache();
+	private final AdaptiveLimit limit;
+	//The limits of the bytes and files copied to this target per second
+	private final RateLimiter byteRate = new RateLimiter(0);
+	private final RateLimiter fileRate = new RateLimiter(0);
+	private final ChunkedCopyStrategy chunked = new ChunkedCopyStrategy(byteRate);
+	private final AtomicLong bytes = new AtomicLong();
+	private ExecutorService pool;
+	//The virtual threads of the songs, this is null when the workers are platform threads
+	private ExecutorService tasks = null;
+	//Songs that failed to be copied to this target
+	private final ResultLog errors = new ResultLog(ERROR_LIMIT);
+	//Songs that kept failing and will be tried again once the other songs are finished
+	private List<PlaylistEntry> deferred = new ArrayList<>();
+	//Duplicate songs that will be linked to their first copy once all songs are copied
+	private Map<PlaylistEntry, File> links = new LinkedHashMap<>();
+	private boolean linking = false;
+	//The first song copied to each file of this target in this run, by the hash of the path of the copy, and by the
+	//copy itself for the very unlikely copies whose hash is the hash of another copy
+	private final LongIntMap claimed = new LongIntMap(1024);
+	private final Map<File, Integer> collided = new HashMap<>();
+	//The play-lists written to this target while copying or null if they aren't written
+	private PlaylistWriter[] writers = null;
+	
+	private volatile boolean running = true;
+	private volatile boolean ended = false;
+	//Why copying to this target was stopped or null if it wasn't stopped because of a song
+	private volatile CopyResult.Cause stopped = null;
+	public volatile int done = 0;
+	public volatile int skipped = 0;
+	public volatile int failed = 0;
+	
+	/**
+	 * @param folder Songs will be copied to this folder
+	 * @param workers The number of songs that will be copied to this target at the same time
+	 * @param capacity The number of songs that can wait in the queue of this target
+	 * @param playlists The play-lists that are being copied, these are used to identify the journal
+	 * @param level The copying option, this is used to identify the journal
+	 * @param metrics Where the time spent forcing the journal to the device is recorded
+	 */
+	public TargetDevice(File folder, int workers, int capacity, List<File> playlists, int level, Metrics metrics){
+		this.folder = folder;
+		this.workers = Math.max(1, workers);
+		this.limit = new AdaptiveLimit(this.workers);
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.manifest = new SyncManifest(folder);
+		this.journal = new TransferJournal(folder, playlists, level, metrics);
+	}
+	
+	/**
+	 * Starts the workers of this target.
+	 * @param worker What each worker does until the queue is finished
+	 */
+	public void start(Runnable worker){
+		pool = Executors.newFixedThreadPool(workers);
+		
+		for(int i = 0; i < workers; i++){
+			pool.execute(worker);
+		}
+		
+		pool.shutdown();
+	}
+	
+	/**
+	 * Starts a dispatcher that gives each song of this target its own thread from the executor. The dispatcher runs on
+	 * a platform thread, it waits for the limit of this target most of the time and a virtual thread would hold on to
+	 * its carrier while doing so.
+	 * @param dispatcher What the dispatcher does until the queue is finished
+	 * @param executor This starts a thread for each song, it is shut down when the songs are finished
+	 */
+	public void start(Runnable dispatcher, ExecutorService executor){
+		tasks = executor;
+		pool = Executors.newSingleThreadExecutor();
+		pool.execute(dispatcher);
+		pool.shutdown();
+	}
+	
+	/**
+	 * Starts a song on its own thread, this is only used after the dispatcher has been started.
+	 * @param task The song
+	 * @throws RejectedExecutionException If the target has been stopped
+	 */
+	public void submit(Runnable task){
+		tasks.execute(task);
+	}
+	
+	/**
+	 * Adds a song to the queue of this target, waiting if the queue is full.
+	 * @param entry The song that will be copied
+	 * @return False if the target has been stopped and won't take any more songs
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	public boolean put(PlaylistEntry entry) throws InterruptedException{
+		while(running){
+			if(queue.offer(entry, POLL, TimeUnit.MILLISECONDS))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This is called by the workers to get the next song.
+	 * @return The next song or null if there are no songs left or the target has been stopped
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	public PlaylistEntry take() throws InterruptedException{
+		while(running){
+			PlaylistEntry entry = queue.poll(POLL, TimeUnit.MILLISECONDS);
+			
+			if(entry != null)
+				return entry;
+			
+			if(ended && queue.isEmpty())
+				return null;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Tells the workers that no more songs will be added, they stop when the queue is empty.
+	 */
+	public void end(){
+		ended = true;
+	}
+	
+	/**
+	 * Stops the workers of this target. Songs that are being copied are interrupted.
+	 * @param cause The fatal cause of the song that stopped the target or null if copying is cancelled
+	 */
+	public void stop(CopyResult.Cause cause){
+		if(cause != null && stopped == null)
+			stopped = cause;
+		
+		running = false;
+		queue.clear();
+		
+		if(pool != null)
+			pool.shutdownNow();
+		
+		if(tasks != null)
+			tasks.shutdownNow();
+	}
+	
+	/**
+	 * Waits until all workers of this target are finished.
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	public void await() throws InterruptedException{
+		if(pool != null)
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		
+		//The dispatcher is finished so no more songs will be started
+		if(tasks != null){
+			tasks.shutdown();
+			tasks.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * @return The number of songs waiting in the queue of this target
+	 */
+	public int getQueued(){
+		return queue.size();
+	}
+	
+	/**
+	 * @return Whether the target is still taking songs
+	 */
+	public boolean isRunning(){
+		return running;
+	}
+	
+	/**
+	 * @return Whether the target was stopped because it ran out of space
+	 */
+	public boolean isNoSpace(){
+		return stopped == CopyResult.Cause.NO_SPACE;
+	}
+	
+	/**
+	 * @return The fatal cause that stopped the target or null if it wasn't stopped because of a song
+	 */
+	public CopyResult.Cause getStopCause(){
+		return stopped;
+	}
+	
+	/**
+	 * @return The folder the songs are copied to
+	 */
+	public File getFolder(){
+		return folder;
+	}
+	
+	/**
+	 * @return The number of songs copied to this target at the same time
+	 */
+	public int getWorkers(){
+		return workers;
+	}
+	
+	/**
+	 * @return The limit of the songs copied to this target at the same time, it is lowered when errors cluster
+	 */
+	public AdaptiveLimit getLimit(){
+		return limit;
+	}
+	
+	/**
+	 * Limits the rate of copying to this target, this can be changed while copying.
+	 * @param bytesPerSecond The number of bytes copied per second, 0 means there is no limit
+	 * @param filesPerSecond The number of songs copied per second, 0 means there is no limit
+	 */
+	public void setRateLimit(double bytesPerSecond, double filesPerSecond){
+		byteRate.setRate(bytesPerSecond);
+		fileRate.setRate(filesPerSecond);
+	}
+	
+	/**
+	 * @return The limit of the songs copied to this target per second
+	 */
+	RateLimiter getFileRate(){
+		return fileRate;
+	}
+	
+	/**
+	 * @param strategy The strategy selected for copying
+	 * @return The strategy that copies to this target, songs go through the rate limit if there is one
+	 */
+	CopyStrategy getStrategy(CopyStrategy strategy){
+		return byteRate.isLimited() ? chunked : strategy;
+	}
+	
+	/**
+	 * @return The strategy that copies to this target through a buffer, under the rate limit if there is one
+	 */
+	ChunkedCopyStrategy getChunkedStrategy(){
+		return chunked;
+	}
+	
+	/**
+	 * @return The manifest of the songs copied to this target
+	 */
+	public SyncManifest getManifest(){
+		return manifest;
+	}
+	
+	/**
+	 * @return The journal of the songs copied to this target in this run
+	 */
+	public TransferJournal getJournal(){
+		return journal;
+	}
+	
+	/**
+	 * @return The folders that are known to exist in this target
+	 */
+	public FolderCache getFolders(){
+		return folders;
+	}
+	
+	/**
+	 * @return Whether duplicate songs can be hard linked to their first copy in this target
+	 */
+	public boolean isLinking(){
+		return linking;
+	}
+	
+	/**
+	 * @param supported Whether the file system of this target supports hard links
+	 */
+	void setLinking(boolean supported){
+		linking = supported;
+	}
+	
+	/**
+	 * Claims the file a song is copied to, so two songs copied to the same file can be found before both of them write
+	 * it at the same time.
+	 * @param copy The hash of the path of the copy
+	 * @param index The index of the song in the play-list
+	 * @return The index of the first song that claimed a copy with this hash, it is this song if it is the first
+	 */
+	synchronized int claim(long copy, int index){
+		int first = claimed.putIfAbsent(copy, index);
+		
+		return first == LongIntMap.MISSING ? index : first;
+	}
+	
+	/**
+	 * Claims a copy whose hash has been claimed for another copy.
+	 * @param copy The file the song is copied to
+	 * @param index The index of the song in the play-list
+	 * @return The index of the first song that claimed the copy, it is this song if it is the first
+	 */
+	synchronized int claim(File copy, int index){
+		Integer first = collided.get(copy);
+		
+		if(first != null)
+			return first;
+		
+		collided.put(copy, index);
+		return index;
+	}
+	
+	/**
+	 * Remembers a duplicate song that will be linked after the song it is a duplicate of has been copied.
+	 * @param entry The duplicate song
+	 * @param original The copy of the first song with the same contents
+	 */
+	synchronized void addLink(PlaylistEntry entry, File original){
+		links.put(entry, original);
+	}
+	
+	/**
+	 * @return The duplicate songs that should be linked and the copies they are linked to, these are forgotten here
+	 */
+	synchronized Map<PlaylistEntry, File> takeLinks(){
+		Map<PlaylistEntry, File> taken = links;
+		links = new LinkedHashMap<>();
+		
+		return taken;
+	}
+	
+	/**
+	 * Remembers a song that kept failing so it is tried again after the other songs.
+	 * @param entry The song
+	 */
+	synchronized void defer(PlaylistEntry entry){
+		deferred.add(entry);
+	}
+	
+	/**
+	 * @return The songs that kept failing in the order they failed, these are forgotten here
+	 */
+	synchronized List<PlaylistEntry> takeDeferred(){
+		List<PlaylistEntry> taken = deferred;
+		deferred = new ArrayList<>();
+		
+		return taken;
+	}
+	
+	/**
+	 * @param playlists The play-lists that will be written to this target in the order of the play-lists copied
+	 */
+	void setWriters(PlaylistWriter[] playlists){
+		writers = playlists;
+	}
+	
+	/**
+	 * Adds a song to its play-list in this target. This is called in the order of the play-list, before the song is
+	 * given to the workers.
+	 * @param entry The song
+	 */
+	public void addToPlaylist(PlaylistEntry entry){
+		if(writers != null)
+			writers[entry.getPlaylist()].add(entry);
+	}
+	
+	/**
+	 * Lists the songs of each play-list in this target as a range of songs, this is used instead of adding each song
+	 * when the songs are copied in another order than the play-list order.
+	 * @param songs The songs that are being copied
+	 * @param starts The index of the first listed song of each play-list
+	 * @param ends The index after the last listed song of each play-list
+	 * @param model This finds the copies of the songs when they are written
+	 */
+	void listInPlaylists(CompactPlaylist songs, int[] starts, int[] ends, Model model){
+		if(writers == null)
+			return;
+		
+		for(int i = 0; i < writers.length; i++){
+			writers[i].list(songs, starts[i], ends[i], model);
+		}
+	}
+	
+	/**
+	 * Tells the play-list of a song that it is finished in this target.
+	 * @param entry The song
+	 * @param copy The copy the play-list should point to or null if the song should be left out
+	 * @param check Whether the copy should only be written if it exists
+	 */
+	void finishInPlaylist(PlaylistEntry entry, File copy, boolean check){
+		if(writers != null)
+			writers[entry.getPlaylist()].finish(entry, copy, check);
+	}
+	
+	/**
+	 * Tells the play-list of a song that it will be tried again after the other songs, finishInPlaylist tells it later
+	 * how it went.
+	 * @param entry The song
+	 * @param copy The file the song will be copied to
+	 */
+	void deferInPlaylist(PlaylistEntry entry, File copy){
+		if(writers != null)
+			writers[entry.getPlaylist()].defer(entry, copy);
+	}
+	
+	/**
+	 * Closes the play-lists written to this target.
+	 * @param finished Whether all songs have been processed, otherwise the older play-lists are kept
+	 * @return Null if the play-lists are written or a message that should be shown to the user
+	 */
+	String closePlaylists(boolean finished){
+		if(writers == null)
+			return null;
+		
+		String message = "";
+		
+		for(PlaylistWriter writer : writers){
+			try{
+				writer.close(finished);
+			}catch(IOException e){
+				message += "Unable to write a play-list to " + this + ": " + e.getMessage() + "\n";
+			}
+		}
+		
+		writers = null;
+		
+		return message.isEmpty() ? null : message;
+	}
+	
+	/**
+	 * @return The number of bytes copied to this target
+	 */
+	public long getBytesCopied(){
+		return bytes.get();
+	}
+	
+	/**
+	 * @param copied The number of bytes that were just copied to this target
+	 */
+	void addBytes(long copied){
+		bytes.addAndGet(copied);
+	}
+	
+	/**
+	 * Counts a processed song. The workers share the counter so this is done one worker at a time.
+	 */
+	synchronized void songDone(){
+		done++;
+	}
+	
+	/**
+	 * Counts a song that didn't need to be copied.
+	 */
+	synchronized void songSkipped(){
+		skipped++;
+	}
+	
+	/**
+	 * Keeps the result of a song that couldn't be copied.
+	 * @param result The result of the song
+	 */
+	synchronized void addError(CopyResult result){
+		failed++;
+		errors.add(result);
+	}
+	
+	/**
+	 * @return The results of the songs that couldn't be copied to this target
+	 */
+	public ResultLog getErrors(){
+		return errors;
+	}
+	
+	/**
+	 * @param file A file in this target
+	 * @return The path of the file relative to the target folder
+	 */
+	String relativize(File file){
+		return folder.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString();
+	}
+	
+	@Override
+	public String toString(){
+		return folder.getPath();
+	}
+}
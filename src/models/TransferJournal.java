@@ -0,0 +1,263 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the TransferJournal class that records each song as soon as it has been copied. It is kept in the target
+ * folder while copying, so if the program is stopped or the device is removed the next run with the same play-list
+ * can continue where it stopped. The journal is deleted when the whole play-list has been processed.
+ * 
+ * The first line identifies the play-lists and the copying option. Every other line has the index of the play-list of
+ * a song, its line number in the play-list, the number of bytes copied and the path of the copy relative to the target
+ * folder.
+ */
+public class TransferJournal{
+	public static final String FILE_NAME = ".m3t-journal";
+	
+	private static final String HEADER = "#M3T-JOURNAL 2";
+	//The journal is forced to the device after this many songs or this many milliseconds, whichever comes first
+	private static final int SYNC_SONGS = 32;
+	private static final long SYNC_INTERVAL = 1000;
+	
+	private final File file;
+	private final String header;
+	private final Metrics metrics;
+	//The play-list index and the line of each song are kept in a single number, it leads to the place of the number
+	//of bytes copied for the song
+	private final LongIntMap completed = new LongIntMap(1024);
+	private long[] bytes = new long[1024];
+	private FileOutputStream out;
+	private int unsynced = 0;
+	private long lastSync = 0;
+	
+	/**
+	 * @param target The target folder the journal is kept in
+	 * @param playlists The play-lists that are being copied
+	 * @param level The copying option, a journal written with a different option is not used
+	 * @param metrics Where the time spent forcing the journal to the device is recorded
+	 */
+	public TransferJournal(File target, List<File> playlists, int level, Metrics metrics){
+		String identity = HEADER + "\t" + level;
+		
+		for(File playlist : playlists){
+			identity += "\t" + playlist.length() + "\t" + playlist.lastModified() + "\t" + playlist.getAbsolutePath();
+		}
+		
+		file = new File(target, FILE_NAME);
+		header = identity;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Reads the songs completed by an earlier run of the same play-list and opens the journal for writing. A journal
+	 * of a different play-list, or of the same play-list after it has been changed, is started over.
+	 * @return The number of songs the earlier run had completed
+	 * @throws IOException If the journal can't be read or written
+	 */
+	public synchronized int open() throws IOException{
+		boolean resume = false;
+		
+		if(file.isFile()){
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+					StandardCharsets.UTF_8))){
+				String line = reader.readLine();
+				resume = header.equals(line);
+				
+				while(resume && (line = reader.readLine()) != null){
+					String[] parts = line.split("\t", 4);
+					
+					//The last line may have been cut short when the program was stopped
+					if(parts.length < 4)
+						continue;
+					
+					try{
+						add(key(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])), Long.parseLong(parts[2]));
+					}catch(NumberFormatException e){
+						//Skip broken lines, the song will just be copied again
+					}
+				}
+			}
+		}
+		
+		//New lines must not be appended to a line that was cut short
+		if(resume)
+			resume = truncate();
+		
+		out = new FileOutputStream(file, resume);
+		
+		if(!resume)
+			write(header);
+		
+		return completed.size();
+	}
+	
+	/**
+	 * @param entry A song in the play-list
+	 * @param destination The copy of the song
+	 * @return True if an earlier run has completed this song and the copy is still there
+	 */
+	public boolean isCompleted(PlaylistEntry entry, File destination){
+		long copied;
+		
+		synchronized(this){
+			int index = completed.get(key(entry.getPlaylist(), entry.getLine()));
+			
+			if(index == LongIntMap.MISSING)
+				return false;
+			
+			copied = bytes[index];
+		}
+		
+		return destination.length() == copied;
+	}
+	
+	/**
+	 * Records a song that has just been copied.
+	 * @param entry The song
+	 * @param bytes The number of bytes that were copied
+	 * @param relative The path of the copy relative to the target folder
+	 * @throws IOException If the journal can't be written
+	 */
+	public synchronized void completed(PlaylistEntry entry, long bytes, String relative) throws IOException{
+		if(out == null)
+			return;
+		
+		write(entry.getPlaylist() + "\t" + entry.getLine() + "\t" + bytes + "\t" + relative);
+	}
+	
+	/**
+	 * Closes the journal. If the whole play-list has been processed the journal is deleted since there is nothing
+	 * to continue.
+	 * @param finished Whether every song in the play-list has been processed
+	 * @throws IOException If the journal can't be closed
+	 */
+	public synchronized void close(boolean finished) throws IOException{
+		if(out == null)
+			return;
+		
+		try{
+			sync();
+			out.close();
+		}finally{
+			out = null;
+		}
+		
+		if(finished && !file.delete())
+			throw new IOException("Unable to delete " + file);
+	}
+	
+	/**
+	 * Cuts off the end of the journal after its last complete line.
+	 * @return False if there is no complete line left, not even the header
+	 * @throws IOException If the journal can't be changed
+	 */
+	private boolean truncate() throws IOException{
+		try(RandomAccessFile journal = new RandomAccessFile(file, "rw")){
+			long length = journal.length();
+			
+			while(length > 0){
+				journal.seek(length - 1);
+				
+				if(journal.read() == '\n')
+					break;
+				
+				length--;
+			}
+			
+			journal.setLength(length);
+			return length > 0;
+		}
+	}
+	
+	/**
+	 * Adds a song completed by an earlier run, a song that was completed more than once keeps its last size.
+	 * @param key The key of the song
+	 * @param copied The number of bytes copied
+	 */
+	private void add(long key, long copied){
+		int size = completed.size();
+		int index = completed.putIfAbsent(key, size);
+		
+		if(index == LongIntMap.MISSING){
+			index = size;
+			
+			if(index == bytes.length)
+				bytes = Arrays.copyOf(bytes, index * 2);
+		}
+		
+		bytes[index] = copied;
+	}
+	
+	/**
+	 * @param playlist The index of a play-list
+	 * @param line A line number in the play-list
+	 * @return The key of the song in the completed songs
+	 */
+	private static long key(int playlist, int line){
+		return ((long) playlist << 32) | (line & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Writes a line to the journal and forces it to the device from time to time.
+	 * @param line The line that will be written
+	 * @throws IOException If the journal can't be written
+	 */
+	private void write(String line) throws IOException{
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		unsynced++;
+		
+		long now = System.currentTimeMillis();
+		
+		if(unsynced >= SYNC_SONGS || now - lastSync >= SYNC_INTERVAL){
+			sync();
+			unsynced = 0;
+			lastSync = now;
+		}
+	}
+	
+	/**
+	 * Forces the journal to the device.
+	 * @throws IOException If the journal can't be forced
+	 */
+	private void sync() throws IOException{
+		long time = System.nanoTime();
+		out.getFD().sync();
+		metrics.record(Metrics.FSYNC, time);
+	}
+}
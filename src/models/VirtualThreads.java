@@ -0,0 +1,101 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package models;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This gives the virtual threads of Java 21 to the CopyEngine while the program is still built for older versions. A
+ * virtual thread costs almost nothing while it waits for the file system, so every song can have its own thread and
+ * thousands of small files can wait for their stat, mkdir and open calls at the same time. They are looked up once,
+ * on older versions there are none and the copy workers are platform threads. Java 19 and 20 have the method but
+ * only as a preview, so an executor is made and shut down once to find out if they can really be used.
+ */
+public final class VirtualThreads{
+	//Executors.newVirtualThreadPerTaskExecutor or null if this Java doesn't have virtual threads
+	private static final Method FACTORY = findFactory();
+	//Whether the factory made an executor when it was tried
+	private static final boolean SUPPORTED = probe();
+	
+	private VirtualThreads(){
+	}
+	
+	/**
+	 * @return Whether this Java has virtual threads
+	 */
+	public static boolean isSupported(){
+		return SUPPORTED;
+	}
+	
+	/**
+	 * @return An executor that starts a new virtual thread for each task or null if this Java doesn't have them
+	 */
+	public static ExecutorService newPerTaskExecutor(){
+		return SUPPORTED ? create() : null;
+	}
+	
+	/**
+	 * @return An executor made by the factory or null if it couldn't make one
+	 */
+	private static ExecutorService create(){
+		if(FACTORY == null)
+			return null;
+		
+		try{
+			return (ExecutorService)FACTORY.invoke(null);
+		}catch(ReflectiveOperationException | RuntimeException e){
+			//Preview versions throw UnsupportedOperationException when preview features aren't enabled
+			return null;
+		}
+	}
+	
+	/**
+	 * @return Whether an executor can be made, the executor that is made is shut down right away
+	 */
+	private static boolean probe(){
+		ExecutorService executor = create();
+		
+		if(executor == null)
+			return false;
+		
+		executor.shutdown();
+		return true;
+	}
+	
+	/**
+	 * @return The method that makes the executor or null if this Java doesn't have it
+	 */
+	private static Method findFactory(){
+		try{
+			return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}catch(NoSuchMethodException e){
+			return null;
+		}
+	}
+}
@@ -0,0 +1,511 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import models.CopyEngine;
+import models.CopyResult;
+import models.CopyListener;
+import models.Metrics;
+import models.Model;
+import models.ParallelCopyStrategy;
+import models.PlaylistBatch;
+import models.RetryPolicy;
+import models.SpacePlanner;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the CommandLine class that copies a play-list without the GUI so it can be used from scripts and on servers
+ * without a display. It only uses the Model and the CopyEngine, no AWT or Swing classes are loaded.
+ */
+public class CommandLine implements CopyListener{
+	public static final int EXIT_OK = 0;
+	public static final int EXIT_FAILED_SONGS = 1;
+	public static final int EXIT_USAGE = 2;
+	public static final int EXIT_NO_SPACE = 3;
+	public static final int EXIT_IO_ERROR = 4;
+	public static final int EXIT_TARGET_GONE = 5;
+	public static final int EXIT_INTERRUPTED = 130;
+	
+	private static final String USAGE =
+			"Usage: java -jar m3t.jar --playlist FILE --target FOLDER [options]\n"
+			+ "  --playlist FILE     The M3U or M3U8 file that has the songs, or a folder of them. Repeat it to\n"
+			+ "                      copy more than one, songs in more than one of them are copied once\n"
+			+ "  --target FOLDER     Songs will be copied to this folder, repeat it to copy to more than one\n"
+			+ "  --source FOLDER     The folder that has the songs, required by the contents mode\n"
+			+ "  --mode MODE         'contents' (default) or 'bottom'\n"
+			+ "  --level N           Number of folders above each song copied by the bottom mode (default 2)\n"
+			+ "  --workers N         Number of songs copied at the same time (default depends on the target)\n"
+			+ "  --virtual-threads   Copy each song on its own virtual thread with Java 21 or newer, for play-lists\n"
+			+ "                      of many small songs where most of the time goes to waiting for the target\n"
+			+ "  --retries N         Number of times a song is tried when reading or writing it fails (default 3),\n"
+			+ "                      songs that keep failing are tried once more at the end\n"
+			+ "  --copy NAME         'nio' (default), 'stream' or 'pipeline', which reads ahead on another thread\n"
+			+ "                      while writing, for sources and targets on different disks\n"
+			+ "  --incremental       Skip songs that already have an identical copy in the target\n"
+			+ "  --hash              Compare contents of copies with a different date, used with --incremental\n"
+			+ "  --same-contents     Treat songs in different files with the same contents as duplicates\n"
+			+ "  --link-duplicates   Hard link duplicates in different files to their first copy instead of\n"
+			+ "                      skipping them, they are copied where links aren't supported\n"
+			+ "  --write-playlists   Write each play-list to the targets as M3U8 with the paths of the copies\n"
+			+ "  --playlist-base P   Start the paths in the written play-lists with P instead of making them\n"
+			+ "                      relative, P is where the target is on the device that plays them\n"
+			+ "  --large-file MB     Copy songs of at least MB megabytes in ranges at the same time (default 256),\n"
+			+ "                      0 copies them like the other songs\n"
+			+ "  --order ORDER       'playlist' (default), 'inode' or 'folder' to copy the songs in the order of\n"
+			+ "                      the source disk, 'folder' keeps albums together. Written play-lists and\n"
+			+ "                      reports keep the play-list order\n"
+			+ "  --verify SUM        Read each copy back and compare its checksum, 'crc32c' or 'sha-256'. The\n"
+			+ "                      checksum is computed while copying and kept for --hash in later runs\n"
+			+ "  --direct-read       Read the copies back from the device instead of the cache, where supported\n"
+			+ "  --max-rate MB       Copy at most MB megabytes per second to each target\n"
+			+ "  --max-files N       Copy at most N songs per second to each target, both limits can be changed\n"
+			+ "                      while copying through JMX with --jmx\n"
+			+ "  --spill-folder F    Keep the songs of large play-lists in files in F instead of memory (default is\n"
+			+ "                      the temporary folder), 'none' keeps them in memory\n"
+			+ "  --metrics FILE      Write the metrics of the run to FILE as JSON when it is finished\n"
+			+ "  --metrics-port N    Show the progress and the metrics as JSON on http://127.0.0.1:N/metrics\n"
+			+ "  --jmx               Show the progress and the metrics through JMX as " + TransferMonitor.OBJECT_NAME
+			+ "\n"
+			+ "  --format FORMAT     'text' (default) or 'json' for the summary\n"
+			+ "  --quiet             Only print the summary\n"
+			+ "  --verbose           Print the progress after every song instead of once a second\n"
+			+ "  --no-space-check    Start copying without checking if the songs fit in the targets\n"
+			+ "Exit codes: 0 all songs copied, 1 some songs failed, 2 wrong arguments, 3 no space on the target,\n"
+			+ "  4 the play-list or target couldn't be used, 5 the target was removed while copying,\n"
+			+ "  128+N when stopped by signal N (the next run continues)";
+	
+	private final Model model = new Model();
+	private final PrintStream out;
+	private final PrintStream err;
+	private boolean json = false;
+	private boolean quiet = false;
+	private boolean verbose = false;
+	//When the progress was last printed, it is printed at most once a second unless verbose
+	private long lastProgress = 0;
+	private boolean spaceCheck = true;
+	
+	/**
+	 * @param out Progress and the summary are printed here
+	 * @param err Errors are printed here
+	 */
+	public CommandLine(PrintStream out, PrintStream err){
+		this.out = out;
+		this.err = err;
+	}
+	
+	/**
+	 * Copies the play-list with the given command line arguments.
+	 * @param args Command line arguments
+	 * @return The exit code of the program
+	 */
+	public static int run(String[] args){
+		return new CommandLine(System.out, System.err).execute(args);
+	}
+	
+	/**
+	 * Reads the arguments, copies the play-list and prints the summary.
+	 * @param args Command line arguments
+	 * @return The exit code of the program
+	 */
+	public int execute(String[] args){
+		List<File> playlists = new ArrayList<>();
+		File source = null;
+		List<File> targets = new ArrayList<>();
+		String mode = "contents";
+		int level = 2;
+		int workers = 0;
+		int retries = RetryPolicy.DEFAULT_ATTEMPTS;
+		long large = ParallelCopyStrategy.DEFAULT_THRESHOLD;
+		String order = null;
+		String verify = null;
+		boolean direct = false;
+		double maxRate = 0;
+		double maxFiles = 0;
+		boolean incremental = false;
+		boolean hash = false;
+		boolean contents = false;
+		boolean link = false;
+		boolean rewrite = false;
+		String base = null;
+		File metricsFile = null;
+		int port = -1;
+		boolean jmx = false;
+		
+		try{
+			for(int i = 0; i < args.length; i++){
+				String arg = args[i];
+				
+				if(arg.equals("--help") || arg.equals("-h")){
+					out.println(USAGE);
+					return EXIT_OK;
+				}else if(arg.equals("--playlist")){
+					playlists.addAll(PlaylistBatch.find(new File(value(args, ++i, arg))));
+				}else if(arg.equals("--source")){
+					source = new File(value(args, ++i, arg));
+				}else if(arg.equals("--target")){
+					targets.add(new File(value(args, ++i, arg)));
+				}else if(arg.equals("--mode")){
+					mode = value(args, ++i, arg);
+				}else if(arg.equals("--level")){
+					level = Integer.parseInt(value(args, ++i, arg));
+				}else if(arg.equals("--workers")){
+					workers = Integer.parseInt(value(args, ++i, arg));
+				}else if(arg.equals("--spill-folder")){
+					String folder = value(args, ++i, arg);
+					model.setSpillFolder(folder.equals("none") ? null : new File(folder));
+				}else if(arg.equals("--virtual-threads")){
+					model.setVirtualThreads(true);
+				}else if(arg.equals("--retries")){
+					retries = Integer.parseInt(value(args, ++i, arg));
+				}else if(arg.equals("--large-file")){
+					large = (long)(Double.parseDouble(value(args, ++i, arg)) * 1024 * 1024);
+				}else if(arg.equals("--order")){
+					order = value(args, ++i, arg);
+				}else if(arg.equals("--verify")){
+					verify = value(args, ++i, arg);
+				}else if(arg.equals("--direct-read")){
+					direct = true;
+				}else if(arg.equals("--max-rate")){
+					maxRate = Double.parseDouble(value(args, ++i, arg));
+				}else if(arg.equals("--max-files")){
+					maxFiles = Double.parseDouble(value(args, ++i, arg));
+				}else if(arg.equals("--copy")){
+					model.setCopyStrategy(value(args, ++i, arg));
+				}else if(arg.equals("--incremental")){
+					incremental = true;
+				}else if(arg.equals("--hash")){
+					hash = true;
+				}else if(arg.equals("--same-contents")){
+					contents = true;
+				}else if(arg.equals("--link-duplicates")){
+					link = true;
+				}else if(arg.equals("--write-playlists")){
+					rewrite = true;
+				}else if(arg.equals("--playlist-base")){
+					base = value(args, ++i, arg);
+				}else if(arg.equals("--metrics")){
+					metricsFile = new File(value(args, ++i, arg));
+				}else if(arg.equals("--metrics-port")){
+					port = Integer.parseInt(value(args, ++i, arg));
+				}else if(arg.equals("--jmx")){
+					jmx = true;
+				}else if(arg.equals("--format")){
+					String format = value(args, ++i, arg);
+					
+					if(!format.equals("text") && !format.equals("json"))
+						throw new IllegalArgumentException("Unknown format: " + format);
+					
+					json = format.equals("json");
+				}else if(arg.equals("--quiet")){
+					quiet = true;
+				}else if(arg.equals("--verbose")){
+					verbose = true;
+				}else if(arg.equals("--no-space-check")){
+					spaceCheck = false;
+				}else{
+					throw new IllegalArgumentException("Unknown argument: " + arg);
+				}
+			}
+			
+			if(playlists.isEmpty() || targets.isEmpty())
+				throw new IllegalArgumentException("--playlist and --target are required");
+			
+			if(mode.equals("contents")){
+				if(source == null)
+					throw new IllegalArgumentException("--source is required by the contents mode");
+				
+				level = -1;
+			}else if(mode.equals("bottom")){
+				if(level < 1)
+					throw new IllegalArgumentException("--level must be at least 1");
+			}else{
+				throw new IllegalArgumentException("Unknown mode: " + mode);
+			}
+			
+			model.setVerify(verify, direct);
+			model.setLargeFileThreshold(large);
+			model.setLocality(order == null || order.equals("playlist") ? null : order);
+		}catch(IllegalArgumentException e){
+			//NumberFormatException is an IllegalArgumentException too
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return EXIT_USAGE;
+		}
+		
+		for(File target : targets){
+			if(!target.isDirectory()){
+				err.println("The target folder does not exist: " + target);
+				return EXIT_IO_ERROR;
+			}
+		}
+		
+		try{
+			model.playlistsSelected(playlists);
+		}catch(Exception e){
+			err.println("Unable to read the play-list: " + e.getMessage());
+			return EXIT_IO_ERROR;
+		}
+		
+		if(source != null)
+			model.rootSelected(source);
+		
+		model.targetsSelected(targets.toArray(new File[targets.size()]));
+		model.setLevel(level);
+		model.setWorkers(workers);
+		model.setRetries(retries);
+		model.setRateLimit(maxRate, maxFiles);
+		model.setIncremental(incremental, hash);
+		model.setDuplicates(contents, link);
+		model.setRewrite(rewrite, base);
+		
+		TransferMonitor monitor = new TransferMonitor(model);
+		
+		try{
+			if(jmx)
+				monitor.registerJmx();
+			
+			if(port >= 0)
+				err.println("Metrics are on http://127.0.0.1:" + monitor.startHttp(port) + "/metrics");
+		}catch(Exception e){
+			//Copying works without the monitor
+			err.println("Unable to start the metrics monitor: " + e.getMessage());
+		}
+		
+		try{
+			int exit = spaceCheck ? checkSpace() : EXIT_OK;
+			
+			if(exit == EXIT_OK)
+				exit = copy();
+			
+			if(metricsFile != null)
+				writeMetrics(metricsFile);
+			
+			return exit;
+		}finally{
+			monitor.stop();
+		}
+	}
+	
+	/**
+	 * Writes the metrics of the run to a file.
+	 * @param file The file the metrics are written to
+	 */
+	private void writeMetrics(File file){
+		try{
+			Files.write(file.toPath(), model.getMetricsJson().getBytes(StandardCharsets.UTF_8));
+		}catch(IOException e){
+			err.println("Unable to write the metrics: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Reads the whole play-list and checks if the songs fit in the target folders.
+	 * @return EXIT_OK if copying can start, otherwise the exit code of the program
+	 */
+	private int checkSpace(){
+		boolean fits = true;
+		
+		try{
+			for(SpacePlanner.Report report : model.planSpace()){
+				if(!report.fits() || !quiet)
+					err.print(report);
+				
+				fits &= report.fits();
+			}
+		}catch(IOException e){
+			err.println("Unable to check the space needed: " + e.getMessage());
+			return EXIT_IO_ERROR;
+		}catch(InterruptedException e){
+			return EXIT_INTERRUPTED;
+		}
+		
+		if(!fits){
+			err.println("There is not enough space on the disk. Nothing was copied.");
+			return EXIT_NO_SPACE;
+		}
+		
+		return EXIT_OK;
+	}
+	
+	/**
+	 * Runs the copy workers and prints the summary when they are finished.
+	 * @return The exit code of the program
+	 */
+	private int copy(){
+		final CopyEngine engine = new CopyEngine(model);
+		final CountDownLatch finished = new CountDownLatch(1);
+		long start = System.nanoTime();
+		boolean interrupted = false;
+		
+		//Stop the workers cleanly on Ctrl+C so the journal is kept and the next run can continue
+		Thread hook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				engine.cancel();
+				
+				try{
+					finished.await(10, TimeUnit.SECONDS);
+				}catch(InterruptedException e){
+					//Exiting anyway
+				}
+			}
+		});
+		
+		Runtime.getRuntime().addShutdownHook(hook);
+		model.isRunning = true;
+		
+		try{
+			engine.run(this);
+		}catch(InterruptedException e){
+			engine.cancel();
+			interrupted = true;
+		}
+		
+		try{
+			Runtime.getRuntime().removeShutdownHook(hook);
+		}catch(IllegalStateException e){
+			//The program is already exiting because it was interrupted
+			interrupted = true;
+		}
+		
+		printSummary(System.nanoTime() - start);
+		finished.countDown();
+		
+		if(interrupted)
+			return EXIT_INTERRUPTED;
+		else if(model.isStopped(CopyResult.Cause.TARGET_GONE))
+			return EXIT_TARGET_GONE;
+		else if(model.isStopped(CopyResult.Cause.NO_SPACE))
+			return EXIT_NO_SPACE;
+		else if(model.failed > 0)
+			return EXIT_FAILED_SONGS;
+		else
+			return EXIT_OK;
+	}
+	
+	/* (non-Javadoc)
+	 * @see models.CopyListener#songProcessed(models.CopyResult)
+	 */
+	@Override
+	public synchronized void songProcessed(CopyResult result){
+		if(quiet || json || !model.isRunning)
+			return;
+		
+		long now = System.nanoTime();
+		
+		if(!verbose && now - lastProgress < 1000000000L)
+			return;
+		
+		lastProgress = now;
+		out.println("Processed " + model.done + (model.isTotalKnown() ? " of " + model.total : ""));
+	}
+	
+	/* (non-Javadoc)
+	 * @see models.CopyListener#messageReported(java.lang.String)
+	 */
+	@Override
+	public void messageReported(String message){
+		err.print(message);
+	}
+	
+	/**
+	 * Prints what has been done in the selected format.
+	 * @param elapsed The time spent copying in nanoseconds
+	 */
+	private void printSummary(long elapsed){
+		double seconds = elapsed / 1e9;
+		
+		if(json){
+			StringBuilder errors = new StringBuilder();
+			
+			for(String line : model.getErrors().split("\n")){
+				if(line.isEmpty())
+					continue;
+				
+				if(errors.length() > 0)
+					errors.append(',');
+				
+				errors.append(Metrics.quote(line));
+			}
+			
+			StringBuilder playlists = new StringBuilder();
+			PlaylistBatch batch = model.getBatch();
+			int targets = Math.max(1, model.getTargets().size());
+			
+			for(int i = 0; i < batch.size(); i++){
+				int[] progress = batch.getProgress(i);
+				
+				if(i > 0)
+					playlists.append(',');
+				
+				playlists.append("{\"name\":" + Metrics.quote(batch.getPlaylists().get(i).getPath()) + ",\"total\":"
+						+ progress[0] * targets + ",\"processed\":" + progress[1] + ",\"failed\":" + progress[2] + "}");
+			}
+			
+			out.println("{\"total\":" + model.total + ",\"processed\":" + model.done + ",\"skipped\":" + model.skipped
+					+ ",\"failed\":" + model.failed + ",\"duplicates\":" + model.duplicated + ",\"bytes\":"
+					+ model.getBytesCopied() + ",\"seconds\":" + String.format(Locale.ROOT, "%.3f", seconds) + ",\"noSpace\":"
+					+ model.isStopped(CopyResult.Cause.NO_SPACE) + ",\"targetGone\":"
+					+ model.isStopped(CopyResult.Cause.TARGET_GONE) + ",\"playlists\":[" + playlists + "],\"errors\":[" + errors + "],\"metrics\":"
+					+ model.getMetrics().toJson() + "}");
+		}else{
+			if(!quiet)
+				err.print(model.getDuplicates());
+			
+			err.print(model.getPlaylistReport());
+			err.print(model.getErrors());
+			out.println(String.format("Processed %d songs, skipped %d, failed %d, duplicates %d, copied %.1f MB in "
+					+ "%.1f seconds", model.done, model.skipped, model.failed, model.duplicated,
+					model.getBytesCopied() / (1024.0 * 1024.0), seconds));
+		}
+	}
+	
+	/**
+	 * @param args Command line arguments
+	 * @param index The index of the value of an option
+	 * @param option The option that needs the value
+	 * @return The value of the option
+	 * @throws IllegalArgumentException If the value is missing
+	 */
+	private static String value(String[] args, int index, String option){
+		if(index >= args.length)
+			throw new IllegalArgumentException(option + " needs a value");
+		
+		return args[index];
+	}
+}
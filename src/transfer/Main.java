@@ -32,14 +32,20 @@ import models.Model;
 /**
  * @author M. Noyan Baykal
  * 
- * This is the main class. It just creates the MVC classes and starts the controller.
+ * This is the main class. It just creates the MVC classes and starts the controller, or runs the CommandLine if there
+ * are arguments.
  */
 public class Main {
 	/**
-	 * Starts the program.
-	 * @param args Command line arguments. We do not need any.
+	 * Starts the program. If there are command line arguments the play-list is copied without the GUI.
+	 * @param args Command line arguments, see CommandLine for the options
 	 */
 	public static void main(String[] args) {
+		if(args.length > 0){
+			System.exit(CommandLine.run(args));
+			return;
+		}
+		
 		Model model = new Model();
     	View view = new View(); 
         Controller controller = new Controller(model, view);
@@ -0,0 +1,177 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package transfer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import models.Model;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is the TransferMonitor class that shows the progress and the metrics of a run while it is copying. It can be
+ * registered with JMX and it can answer HTTP requests on the local machine with the same JSON that the command line
+ * prints as its summary. Both are only started when they are asked for. The HTTP answers are read only. Through JMX
+ * the MaxMegabytesPerSecond and MaxFilesPerSecond attributes can also be changed while copying, they limit each
+ * target on its own. Any number above 0 is a limit, 0 or less removes it. A value that isn't a number is rejected.
+ */
+public class TransferMonitor implements TransferMonitorMBean{
+	public static final String OBJECT_NAME = "m3t:type=Transfer";
+	
+	private final Model model;
+	private ObjectName registered = null;
+	private HttpServer server = null;
+	
+	/**
+	 * @param model The Model class that is copying
+	 */
+	public TransferMonitor(Model model){
+		this.model = model;
+	}
+	
+	/**
+	 * Registers this monitor with the platform MBean server.
+	 * @throws JMException If the monitor can't be registered
+	 */
+	public void registerJmx() throws JMException{
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		registered = name;
+	}
+	
+	/**
+	 * Answers requests for /metrics on the loopback address.
+	 * @param port The port to listen on, 0 picks a free one
+	 * @return The port the server listens on
+	 * @throws IOException If the server can't be started
+	 */
+	public int startHttp(int port) throws IOException{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = getMetrics().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				
+				try(OutputStream out = exchange.getResponseBody()){
+					out.write(body);
+				}
+			}
+		});
+		server.start();
+		
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * Stops the HTTP server and removes the monitor from JMX.
+	 */
+	public void stop(){
+		if(server != null){
+			server.stop(0);
+			server = null;
+		}
+		
+		if(registered != null){
+			try{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+			}catch(JMException e){
+				//The program is exiting anyway
+			}
+			
+			registered = null;
+		}
+	}
+	
+	@Override
+	public int getProcessed(){
+		return model.done;
+	}
+	
+	@Override
+	public int getTotal(){
+		return model.total;
+	}
+	
+	@Override
+	public int getFailed(){
+		return model.failed;
+	}
+	
+	@Override
+	public long getBytesCopied(){
+		return model.getBytesCopied();
+	}
+	
+	@Override
+	public String getMetrics(){
+		return model.getMetricsJson();
+	}
+	
+	@Override
+	public double getMaxMegabytesPerSecond(){
+		return model.getMaxMegabytesPerSecond();
+	}
+	
+	@Override
+	public void setMaxMegabytesPerSecond(double limit){
+		checkLimit(limit);
+		model.setRateLimit(limit, model.getMaxFilesPerSecond());
+	}
+	
+	@Override
+	public double getMaxFilesPerSecond(){
+		return model.getMaxFilesPerSecond();
+	}
+	
+	@Override
+	public void setMaxFilesPerSecond(double limit){
+		checkLimit(limit);
+		model.setRateLimit(model.getMaxMegabytesPerSecond(), limit);
+	}
+	
+	/**
+	 * @param limit A rate limit set through JMX
+	 * @throws IllegalArgumentException If the limit isn't a number
+	 */
+	private static void checkLimit(double limit){
+		if(Double.isNaN(limit))
+			throw new IllegalArgumentException("The limit must be a number");
+	}
+}
@@ -0,0 +1,80 @@
+/*
+	The MIT License (MIT)
+	
+	Copyright (c) [2014] [Melik Noyan Baykal]
+	
+	Permission is hereby granted, free of charge, to any person obtaining a copy
+	of this software and associated documentation files (the "Software"), to deal
+	in the Software without restriction, including without limitation the rights
+	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+	copies of the Software, and to permit persons to whom the Software is
+	furnished to do so, subject to the following conditions:
+	
+	The above copyright notice and this permission notice shall be included in all
+	copies or substantial portions of the Software.
+	
+	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+	SOFTWARE. 
+
+ */
+
+package transfer;
+
+/**
+ * @author M. Noyan Baykal
+ * 
+ * This is what the TransferMonitor shows through JMX, for example in JConsole or VisualVM.
+ */
+public interface TransferMonitorMBean{
+	/**
+	 * @return The number of songs processed in all targets
+	 */
+	public int getProcessed();
+	
+	/**
+	 * @return The number of songs in all targets, this grows while the play-lists are read
+	 */
+	public int getTotal();
+	
+	/**
+	 * @return The number of songs that couldn't be copied
+	 */
+	public int getFailed();
+	
+	/**
+	 * @return The number of bytes copied
+	 */
+	public long getBytesCopied();
+	
+	/**
+	 * @return The progress, the queues of the targets and the metrics as a JSON object
+	 */
+	public String getMetrics();
+	
+	/**
+	 * @return The number of megabytes copied to each target per second or 0 if there is no limit
+	 */
+	public double getMaxMegabytesPerSecond();
+	
+	/**
+	 * @param limit The number of megabytes copied to each target per second, 0 or less removes the limit
+	 * @throws IllegalArgumentException If the limit isn't a number
+	 */
+	public void setMaxMegabytesPerSecond(double limit);
+	
+	/**
+	 * @return The number of songs copied to each target per second or 0 if there is no limit
+	 */
+	public double getMaxFilesPerSecond();
+	
+	/**
+	 * @param limit The number of songs copied to each target per second, 0 or less removes the limit
+	 * @throws IllegalArgumentException If the limit isn't a number
+	 */
+	public void setMaxFilesPerSecond(double limit);
+}
@@ -44,6 +44,15 @@ public class View {
     private JRadioButton sourceButton;
     private JRadioButton indexButton;
     private JTextField recurseLevelLabel;
+    private JTextField workersLabel;
+    private JTextField rateLabel;
+    private JTextField filesLabel;
+    private JProgressBar progressBar;
+    private JCheckBox incrementalButton;
+    private JCheckBox hashButton;
+    private JCheckBox rewriteButton;
+    private JCheckBox verifyButton;
+    private JCheckBox spaceButton;
     JTextArea console;
 	JScrollPane consolePane;
     
@@ -118,9 +127,48 @@ public class View {
         recurseLevelLabel.setText("2");
         recurseLevelLabel.setToolTipText("This many folders above each file will be copied");
         
+        //This label is used to set how many songs are copied at the same time
+        workersLabel = new JTextField();
+        workersLabel.setColumns(3);
+        workersLabel.setToolTipText("Number of songs copied at the same time, leave empty to pick it for the target");
+        
+        //These are used to limit how fast songs are copied to each target, they can be changed while copying
+        rateLabel = new JTextField();
+        rateLabel.setColumns(3);
+        rateLabel.setToolTipText("Megabytes copied to each target per second, press enter to change it while copying");
+        filesLabel = new JTextField();
+        filesLabel.setColumns(3);
+        filesLabel.setToolTipText("Songs copied to each target per second, press enter to change it while copying");
+        
         panel.add(sourceButton);
         panel.add(indexButton);
         panel.add(recurseLevelLabel);
+        //These are used to skip songs that were copied before
+        incrementalButton = new JCheckBox("Skip unchanged");
+        incrementalButton.setToolTipText("Select this to skip songs that already have an identical copy in the target");
+        hashButton = new JCheckBox("Compare contents");
+        hashButton.setToolTipText("Select this to compare the contents of copies with a different date");
+        //This is used to write the play-lists to the targets with the paths of the copies
+        rewriteButton = new JCheckBox("Write play-lists");
+        rewriteButton.setToolTipText("Select this to write each play-list to the target with the paths of the copies");
+        //This is used to read each copy back and compare it to the song
+        verifyButton = new JCheckBox("Verify copies");
+        verifyButton.setToolTipText("Select this to read each copy back from the device and compare its checksum");
+        //This is used to read the whole play-list and check if it fits before copying anything
+        spaceButton = new JCheckBox("Check space first");
+        spaceButton.setToolTipText("Select this to check if all songs fit in the targets before copying starts");
+        
+        panel.add(new JLabel(" Threads "));
+        panel.add(workersLabel);
+        panel.add(new JLabel(" MB/s "));
+        panel.add(rateLabel);
+        panel.add(new JLabel(" Songs/s "));
+        panel.add(filesLabel);
+        panel.add(incrementalButton);
+        panel.add(hashButton);
+        panel.add(rewriteButton);
+        panel.add(verifyButton);
+        panel.add(spaceButton);
 
 	    pane.add(panel, BorderLayout.PAGE_START);
     }
@@ -137,6 +185,11 @@ public class View {
 	    startButton = new JButton("Start copying");
 	    startButton.setToolTipText("Make sure you have chosen the desired folders and folder structure option");
     	
+	    //Progress of the copying
+	    progressBar = new JProgressBar();
+	    progressBar.setStringPainted(true);
+	    progressBar.setString("");
+	    
 	    //Set the console area
     	console = new javax.swing.JTextArea();
     	console.setColumns(30);
@@ -147,6 +200,7 @@ public class View {
     	consolePane = new javax.swing.JScrollPane(console);
 
 	    lastPanel.add(startButton);
+	    lastPanel.add(progressBar);
 	    lastPanel.add(consolePane);
 
 	    pane.add(lastPanel, BorderLayout.PAGE_END);
@@ -196,6 +250,62 @@ public class View {
     	return recurseLevelLabel.getText();
     }
     
+    /**
+     * @return The label that has the number of songs that will be copied at the same time
+     */
+    public String getWorkers(){
+    	return workersLabel.getText();
+    }
+    
+    /**
+     * @return The field that has the megabytes copied to each target per second, empty if there is no limit
+     */
+    public JTextField getRateField(){
+    	return rateLabel;
+    }
+    
+    /**
+     * @return The field that has the songs copied to each target per second, empty if there is no limit
+     */
+    public JTextField getFilesField(){
+    	return filesLabel;
+    }
+    
+    /**
+     * @return Whether songs that already have an identical copy in the target should be skipped
+     */
+    public boolean isIncremental(){
+    	return incrementalButton.isSelected();
+    }
+    
+    /**
+     * @return Whether the contents of copies with a different date should be compared before skipping them
+     */
+    public boolean isHashing(){
+    	return hashButton.isSelected();
+    }
+    
+    /**
+     * @return Whether the play-lists should be written to the targets when copying is finished
+     */
+    public boolean isRewriting(){
+    	return rewriteButton.isSelected();
+    }
+    
+    /**
+     * @return Whether each copy should be read back and compared to the song
+     */
+    public boolean isVerifying(){
+    	return verifyButton.isSelected();
+    }
+    
+    /**
+     * @return Whether the whole play-list should be checked to fit in the targets before copying starts
+     */
+    public boolean isCheckingSpace(){
+    	return spaceButton.isSelected();
+    }
+    
     /**
      * @return Whether "copy from bottom" option is selected or not
      */
@@ -206,6 +316,13 @@ public class View {
     		return false;
     }
     
+    /**
+     * @return The progress bar that shows how many songs have been processed and how fast
+     */
+    public JProgressBar getProgressBar(){
+    	return progressBar;
+    }
+    
     /**
      * @return The console that displays output messages
      */